@@ -1,13 +1,24 @@
 package net.starkenberg.ai.springaiagent;
 
+import net.starkenberg.ai.springaiagent.services.SearchService;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class SpringAiAgentApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(SpringAiAgentApplication.class, args);
     }
 
+    @Bean
+    public ToolCallbackProvider searchTools(SearchService searchService) {
+        return MethodToolCallbackProvider.builder().toolObjects(searchService).build();
+    }
+
 }
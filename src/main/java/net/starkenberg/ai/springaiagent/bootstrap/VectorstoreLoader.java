@@ -1,42 +1,326 @@
 package net.starkenberg.ai.springaiagent.bootstrap;
 
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.jfr.ParseEvent;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import net.starkenberg.ai.springaiagent.jfr.SplitEvent;
+import net.starkenberg.ai.springaiagent.services.HtmlContentExtractor;
+import net.starkenberg.ai.springaiagent.services.IndexSnapshotService;
+import net.starkenberg.ai.springaiagent.services.StreamingDocumentParser;
 import net.starkenberg.ai.springaiagent.services.WebScraperService;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
 import org.springframework.ai.transformer.splitter.TextSplitter;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * Indexes every configured site at startup, crawling sites in parallel, and re-crawls each site on its own
+ * refresh interval. Chunks are tagged with their site so retrieval can be limited to one site's partition, and with
+ * the crawl that stored them, so a re-crawl can remove a page's old chunks after its new ones are in place.
+ */
 @Slf4j
 @Component
 public class VectorstoreLoader implements CommandLineRunner {
+    static final String CRAWL_KEY = "crawl";
 
+    /**
+     * One crawl of a site
+     * @param id tags every chunk stored by this crawl
+     * @param fresh the site had nothing indexed, so there are no old chunks to remove
+     */
+    private record Crawl(SiteProperties.Site site, String id, boolean fresh, IndexSnapshotService.Export export) {
+    }
+
+    private final SiteProperties siteProperties;
     private final WebScraperService webScraperService;
     private final VectorStore vectorStore;
+    private final IndexSnapshotService snapshotService;
+    private final StreamingDocumentParser streamingParser;
+    private final HtmlContentExtractor contentExtractor;
+    private final ScheduledExecutorService crawler;
 
-    public VectorstoreLoader(WebScraperService webScraperService, VectorStore vectorStore) {
+    public VectorstoreLoader(SiteProperties siteProperties, WebScraperService webScraperService, VectorStore vectorStore,
+                             IndexSnapshotService snapshotService, StreamingDocumentParser streamingParser,
+                             HtmlContentExtractor contentExtractor) {
+        this.siteProperties = siteProperties;
         this.webScraperService = webScraperService;
         this.vectorStore = vectorStore;
+        this.snapshotService = snapshotService;
+        this.streamingParser = streamingParser;
+        this.contentExtractor = contentExtractor;
+        // one thread per site so a slow site never delays another site's crawl
+        this.crawler = Executors.newScheduledThreadPool(siteProperties.sites().size(),
+                Thread.ofPlatform().name("site-crawl-", 0).daemon().factory());
     }
 
     @Override
     public void run(String... args) throws Exception {
-        if(vectorStore.similaritySearch("amplifyfederal").isEmpty()) {
-            webScraperService.crawlSite().forEach(site -> {
-                log.debug("Loading vector for {}", site);
-                TikaDocumentReader reader = new TikaDocumentReader(site);
-                List<Document> docs = reader.get();
-                TextSplitter splitter = new TokenTextSplitter();
-                List<Document> splitDocs = splitter.apply(docs);
-                vectorStore.add(splitDocs);
-            });
+        List<SiteProperties.Site> empty = siteProperties.sites().stream().filter(this::isEmpty).toList();
+        if (!empty.isEmpty() && snapshotService.canImport()) {
+            Map<String, Long> imported = snapshotService.importSnapshot(
+                    empty.stream().map(SiteProperties.Site::id).collect(Collectors.toSet()));
+            log.info("Vectorstore loaded {} chunks from snapshot for sites {}",
+                    imported.values().stream().mapToLong(Long::longValue).sum(), imported.keySet());
+            // sites the snapshot holds nothing for are crawled instead
+            empty = empty.stream().filter(site -> !imported.containsKey(site.id())).toList();
+        }
+        boolean complete = true;
+        if (!empty.isEmpty()) {
+            // a snapshot of only some sites would stand in for a full index at the next startup
+            boolean everySite = empty.size() == siteProperties.sites().size();
+            try (IndexSnapshotService.Export export = everySite ? snapshotService.startExport() : IndexSnapshotService.Export.NONE) {
+                List<Callable<Boolean>> crawls = empty.stream().<Callable<Boolean>>map(site -> () -> crawl(site, true, export)).toList();
+                for (Future<Boolean> crawl : crawler.invokeAll(crawls)) {
+                    complete &= crawl.get();
+                }
+                // a snapshot missing pages would be imported by later startups in place of a full crawl
+                if (complete) export.commit();
+            }
             log.info("Vectorstore loaded");
         }
+        if (complete) exportIndex();
+        for (SiteProperties.Site site : siteProperties.sites()) {
+            if (site.refreshInterval() == null) continue;
+            long interval = site.refreshInterval().toMillis();
+            crawler.scheduleWithFixedDelay(() -> refresh(site), interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh(SiteProperties.Site site) {
+        if (crawl(site, false, IndexSnapshotService.Export.NONE)) exportIndex();
+    }
+
+    /**
+     * Replace the snapshot with everything now in the index, when snapshots are read from the index
+     */
+    private void exportIndex() {
+        if (!snapshotService.exportsIndex()) return;
+        try {
+            snapshotService.exportIndex();
+        } catch (IOException | RuntimeException e) {
+            // the previous snapshot is left in place
+            log.error("Failed to export index snapshot: {}", e.getMessage());
+        }
+    }
+
+    private boolean isEmpty(SiteProperties.Site site) {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query(site.name())
+                .topK(1)
+                .filterExpression(site.filterExpression())
+                .build()).isEmpty();
+    }
+
+    /**
+     * @param fresh the site has nothing indexed
+     * @return true if every page of the site was indexed completely
+     */
+    private boolean crawl(SiteProperties.Site site, boolean fresh, IndexSnapshotService.Export export) {
+        Crawl crawl = new Crawl(site, UUID.randomUUID().toString(), fresh, export);
+        try {
+            // HTML pages are indexed from the crawler's parsed DOM, everything else is fetched again by Tika
+            Set<String> extracted = new HashSet<>();
+            Set<String> failed = new HashSet<>();
+            Set<String> urls = webScraperService.crawlSite(site.baseUrl(), (url, page) -> {
+                try {
+                    if (loadMainContent(crawl, url, page)) extracted.add(url);
+                } catch (RuntimeException e) {
+                    // reading the page again through Tika would add a second copy next to what was stored
+                    log.error("Failed to index: {} \n {}", url, e.getMessage());
+                    abandon(crawl, url);
+                    failed.add(url);
+                }
+            });
+            boolean complete = failed.isEmpty();
+            for (String url : urls) {
+                if (!extracted.contains(url) && !failed.contains(url)) complete &= load(crawl, url);
+            }
+            // only a complete crawl knows every page still on the site
+            if (complete && !fresh) forgetRemovedPages(site, urls);
+            log.info("Site {} loaded {} pages", site.id(), urls.size());
+            return complete;
+        } catch (RuntimeException e) {
+            // keep the schedule going, the next refresh retries the whole site
+            log.error("Failed to crawl site {}: {}", site.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean loadMainContent(Crawl crawl, String url, org.jsoup.nodes.Document page) {
+        if (!contentExtractor.isEnabled()) return false;
+        try (PipelineContext.Scope scope = PipelineContext.open(url)) {
+            ParseEvent event = new ParseEvent();
+            event.begin();
+            HtmlContentExtractor.Extraction extraction = contentExtractor.extract(url, page);
+            commit(event, url, "extract", extraction.sections());
+            // nothing recognisable as content, let Tika read the whole page instead
+            if (extraction.sections().isEmpty()) return false;
+            log.debug("Loading vector for {}", url);
+            store(crawl, url, extraction.sections(), new TokenTextSplitter());
+            forgetReplaced(crawl, url);
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the document could only be partly parsed
+     */
+    private boolean load(Crawl crawl, String url) {
+        log.debug("Loading vector for {}", url);
+        TextSplitter splitter = new TokenTextSplitter();
+        try (PipelineContext.Scope scope = PipelineContext.open(url)) {
+            ParseEvent event = new ParseEvent();
+            event.begin();
+            if (streamingParser.supports(url)) {
+                // split and store each page as it is parsed so a large document is never held whole,
+                // the parse event spans the splits and upserts of every segment
+                boolean complete = true;
+                try {
+                    streamingParser.parse(url, segment -> {
+                        event.documents++;
+                        event.characters += segment.getText().length();
+                        store(crawl, url, List.of(segment), splitter);
+                    });
+                    forgetReplaced(crawl, url);
+                } catch (Exception e) {
+                    log.error("Failed to parse: {} \n {}", url, e.getMessage());
+                    abandon(crawl, url);
+                    complete = false;
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.url = url;
+                    event.mode = "stream";
+                    event.commit();
+                }
+                return complete;
+            }
+            TikaDocumentReader reader = new TikaDocumentReader(url);
+            List<Document> docs = reader.get();
+            commit(event, url, "tika", docs);
+            docs.forEach(doc -> doc.getMetadata().put("url", url));
+            store(crawl, url, docs, splitter);
+            forgetReplaced(crawl, url);
+            return true;
+        }
+    }
+
+    private void store(Crawl crawl, String url, List<Document> docs, TextSplitter splitter) {
+        SplitEvent event = new SplitEvent();
+        event.begin();
+        Map<String, Document> chunks = new LinkedHashMap<>();
+        for (Document chunk : splitter.apply(docs)) {
+            Document tagged = tag(crawl.site(), crawl.id(), url, chunk);
+            chunks.putIfAbsent(tagged.getId(), tagged);
+        }
+        List<Document> splitDocs = List.copyOf(chunks.values());
+        event.end();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.documents = docs.size();
+            event.chunks = splitDocs.size();
+            event.commit();
+        }
+        crawl.export().capture(splitDocs, () -> vectorStore.add(splitDocs));
+    }
+
+    /**
+     * Remove the chunks of a page that its new version no longer has, once the new version has been stored, so the
+     * page stays searchable while it is re-indexed. Unchanged chunks keep their id and were overwritten with this
+     * crawl's tag, so only chunks of text that changed or went away are left with an older tag. Sites never share a
+     * host, so the url alone identifies the page.
+     */
+    private void forgetReplaced(Crawl crawl, String url) {
+        if (crawl.fresh()) return;
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        delete(filter.and(filter.eq("url", url), filter.ne(CRAWL_KEY, crawl.id())).build(), url);
+    }
+
+    /**
+     * Clean up after a page failed part way through being stored. A page of a fresh site has nothing else indexed,
+     * so what was stored is removed rather than served as a partial document. Otherwise the previous version is kept
+     * whole, and the next crawl that indexes the page replaces it.
+     */
+    private void abandon(Crawl crawl, String url) {
+        if (!crawl.fresh()) return;
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        delete(filter.eq("url", url).build(), url);
+    }
+
+    private void delete(Filter.Expression expression, String url) {
+        try {
+            vectorStore.delete(expression);
+        } catch (RuntimeException e) {
+            log.error("Failed to remove chunks of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the site's chunks for pages the crawl no longer found
+     */
+    private void forgetRemovedPages(SiteProperties.Site site, Set<String> urls) {
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        try {
+            vectorStore.delete(filter.and(filter.eq(SiteProperties.METADATA_KEY, site.id()), filter.nin("url", urls.toArray())).build());
+        } catch (RuntimeException e) {
+            log.error("Failed to remove pages no longer on site {}: {}", site.id(), e.getMessage());
+        }
+    }
+
+    /**
+     * Tag a chunk with its site and the crawl storing it. The id is derived from the site, page and text, so a
+     * refresh overwrites unchanged chunks instead of adding them again.
+     */
+    static Document tag(SiteProperties.Site site, String crawlId, String url, Document chunk) {
+        Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+        metadata.put(SiteProperties.METADATA_KEY, site.id());
+        metadata.put(CRAWL_KEY, crawlId);
+        String key = site.id() + "\n" + url + "\n" + chunk.getText();
+        return Document.builder()
+                .id(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString())
+                .text(chunk.getText())
+                .metadata(metadata)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        crawler.shutdownNow();
+    }
+
+    private static void commit(ParseEvent event, String url, String mode, List<Document> docs) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.mode = mode;
+            event.documents = docs.size();
+            event.characters = docs.stream().mapToLong(doc -> doc.getText() == null ? 0 : doc.getText().length()).sum();
+            event.commit();
+        }
     }
 }
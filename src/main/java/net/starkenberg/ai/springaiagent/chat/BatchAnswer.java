@@ -0,0 +1,9 @@
+package net.starkenberg.ai.springaiagent.chat;
+
+/**
+ * One line of a batch response. Timings are wall clock milliseconds; the embedding time is
+ * shared by every item in the batch because all queries are embedded in a single call.
+ */
+public record BatchAnswer(int index, String question, String answer, String error,
+                          long embeddingMillis, long retrievalMillis, long generationMillis, long totalMillis) {
+}
@@ -1,42 +1,74 @@
 package net.starkenberg.ai.springaiagent.chat;
 
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import net.starkenberg.ai.springaiagent.services.ChatModelUnavailableException;
+import net.starkenberg.ai.springaiagent.services.DegradedAnswer;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 
+@Slf4j
 @Service
 public class CustomerSupportAssistant {
+    private static final String SYSTEM_PROMPT = """
+						You are a customer chat support agent for the {site} website.
+						Assume all questions pertain to {site},
+						if {site} is not mentioned in the question, add it to the question.
+						Respond in a friendly, helpful, and joyful manner.
+						You are interacting with customers through an online chat system.
+						If you can not retrieve the information requested from the documents provided
+						, please just say "I am sorry, I can not find the information requested.
+					""";
+
     private final ChatClient chatClient;
+    private final VectorStore vectorStore;
 
     // @formatter:off
     public CustomerSupportAssistant(ChatClient.Builder chatClientBuilder, VectorStore vectorStore, ChatMemory chatMemory) {
         this.chatClient = chatClientBuilder
-                .defaultSystem("""
-						You are a customer chat support agent for the Amplify Federal website.
-						Assume all questions pertain to Amplify Federal,
-						if Amplify Federal is not mentioned in the question, add it to the question.
-						Respond in a friendly, helpful, and joyful manner.
-						You are interacting with customers through an online chat system.
-						If you can not retrieve the information requested from the documents provided
-						, please just say "I am sorry, I can not find the information requested.
-					""")
                 .defaultAdvisors(
                     MessageChatMemoryAdvisor.builder(chatMemory).build(),
                     QuestionAnswerAdvisor.builder(vectorStore).build()
                 )
                 .build();
+        this.vectorStore = vectorStore;
     }
     // @formatter:on
 
-    public String chat(String chatId, String userMessage, Object... additionalTools) {
-        return this.chatClient.prompt()
-                .user(userMessage)
-                .tools(additionalTools)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, chatId))
-                .call()
-                .content();
+    /**
+     * Answer from the given site's documents only. Conversations are kept per site, so the same chat id
+     * used against two sites holds two separate histories.
+     */
+    public String chat(SiteProperties.Site site, String chatId, String userMessage, Object... additionalTools) {
+        Assert.notNull(chatId, "chatId value cannot be null");
+        String conversationId = site.id() + ":" + chatId;
+        try (PipelineContext.Scope scope = PipelineContext.open(conversationId)) {
+            return this.chatClient.prompt()
+                    .system(s -> s.text(SYSTEM_PROMPT).param("site", site.name()))
+                    .user(userMessage)
+                    .tools(additionalTools)
+                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId)
+                            .param(QuestionAnswerAdvisor.FILTER_EXPRESSION, site.filterExpression()))
+                    .call()
+                    .content();
+        } catch (ChatModelUnavailableException e) {
+            log.warn("Falling back to retrieved documents for {}: {}", conversationId, e.getMessage());
+            return degradedAnswer(site, userMessage);
+        }
+    }
+
+    private String degradedAnswer(SiteProperties.Site site, String userMessage) {
+        return DegradedAnswer.from(site, this.vectorStore.similaritySearch(SearchRequest.builder()
+                .query(userMessage)
+                .topK(DegradedAnswer.DOCUMENTS)
+                .filterExpression(site.filterExpression())
+                .build()));
     }
 }
@@ -0,0 +1,4 @@
+package net.starkenberg.ai.springaiagent.chat;
+
+public record SearchResult(String content, String url, Double score) {
+}
@@ -0,0 +1,278 @@
+package net.starkenberg.ai.springaiagent.chat;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.ChatMemoryProperties;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat memory shared by every instance through a JDBC store, so conversations survive restarts and
+ * do not need sticky sessions.
+ * <p>
+ * Only the turns added by each save are written: they are appended as new rows, and rows older than the oldest
+ * stored message the memory window kept are deleted. Two instances that each add a turn from a stale view of a
+ * conversation therefore keep both turns, rather than the last writer replacing the other's. Rows are ordered by
+ * the time they were saved.
+ * <p>
+ * Writes are queued and flushed in batches off the request thread. Reads come from a small cache of hot
+ * conversations, then the database plus anything still queued. A cached conversation is trusted for
+ * {@code cacheTtl}, which bounds how stale it can be when another instance served the previous turn.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.chat.memory.store", havingValue = "jdbc")
+public class SharedChatMemoryRepository implements ChatMemoryRepository {
+    private static final String TABLE = """
+            CREATE TABLE chat_memory (
+                conversation_id VARCHAR(255) NOT NULL,
+                seq %s NOT NULL,
+                message_type VARCHAR(16) NOT NULL,
+                content %s NOT NULL,
+                PRIMARY KEY (conversation_id, seq)
+            )""";
+    // marks messages that are already stored, so saving them again does not append them twice
+    private static final String SEQ = "chatMemorySeq";
+
+    private record CachedConversation(List<Message> messages, long loadedAt) {
+    }
+
+    private record Row(long seq, MessageType type, String content) {
+    }
+
+    /**
+     * Changes queued for one conversation
+     * @param clear delete the stored conversation before appending
+     * @param appended turns to insert, in order
+     * @param trimBefore rows with a lower seq have left the memory window, or 0 to keep every row
+     */
+    private record PendingWrite(boolean clear, List<Row> appended, long trimBefore) {
+        static final PendingWrite DELETE = new PendingWrite(true, List.of(), 0);
+
+        PendingWrite then(PendingWrite next) {
+            if (next.clear()) return next;
+            List<Row> rows = new ArrayList<>(appended);
+            rows.addAll(next.appended());
+            return new PendingWrite(clear, rows, Math.max(trimBefore, next.trimBefore()));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatMemoryProperties properties;
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final Map<String, CachedConversation> cache;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("chat-memory-flush").daemon().factory());
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong clock = new AtomicLong();
+    // low bits of every seq, so two instances saving in the same microsecond never write the same key
+    private final long instance = ThreadLocalRandom.current().nextLong(256);
+
+    public SharedChatMemoryRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      ChatMemoryProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, CachedConversation>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedConversation> eldest) {
+                return size() > properties.cacheSize();
+            }
+        });
+        if (properties.initializeSchema()) initializeSchema();
+        long interval = properties.flushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        flush();
+        return jdbcTemplate.queryForList("SELECT DISTINCT conversation_id FROM chat_memory", String.class);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        CachedConversation cached = cache.get(conversationId);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < properties.cacheTtl().toNanos()) {
+            return cached.messages();
+        }
+        List<Row> rows = new ArrayList<>();
+        PendingWrite queued = pending.get(conversationId);
+        if (queued == null || !queued.clear()) {
+            long trimBefore = queued == null ? 0 : queued.trimBefore();
+            rows.addAll(jdbcTemplate.query(
+                    "SELECT seq, message_type, content FROM chat_memory WHERE conversation_id = ? AND seq >= ? ORDER BY seq",
+                    (rs, row) -> new Row(rs.getLong(1), MessageType.valueOf(rs.getString(2)), rs.getString(3)),
+                    conversationId, trimBefore));
+        }
+        // turns saved here but not yet flushed
+        if (queued != null) rows.addAll(queued.appended());
+        List<Message> messages = rows.stream().map(SharedChatMemoryRepository::toMessage).toList();
+        cache.put(conversationId, new CachedConversation(messages, System.nanoTime()));
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Row> appended = new ArrayList<>();
+        List<Message> window = new ArrayList<>();
+        long oldestKept = Long.MAX_VALUE;
+        for (Message message : messages) {
+            // tool responses only matter within the call that made them, keep the conversation text
+            if (message.getMessageType() == MessageType.TOOL) continue;
+            if (message.getMetadata().get(SEQ) instanceof Long seq) {
+                oldestKept = Math.min(oldestKept, seq);
+                window.add(message);
+            } else {
+                Row row = new Row(nextSeq(), message.getMessageType(), Objects.requireNonNullElse(message.getText(), ""));
+                appended.add(row);
+                window.add(toMessage(row));
+            }
+        }
+        // the window drops its oldest messages first, anything older than the oldest one kept has been evicted;
+        // turns another instance added meanwhile are newer, so they survive until a window that saw them drops them
+        long trimBefore = oldestKept == Long.MAX_VALUE ? 0 : oldestKept;
+        // an empty window is written as a delete
+        PendingWrite write = window.isEmpty() ? PendingWrite.DELETE : new PendingWrite(false, appended, trimBefore);
+        cache.put(conversationId, new CachedConversation(List.copyOf(window), System.nanoTime()));
+        pending.merge(conversationId, write, PendingWrite::then);
+        if (pending.size() >= properties.batchSize() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        cache.remove(conversationId);
+        pending.merge(conversationId, PendingWrite.DELETE, PendingWrite::then);
+    }
+
+    /**
+     * Write every queued conversation in one transaction
+     */
+    public void flush() {
+        synchronized (flusher) {
+            flushRequested.set(false);
+            if (pending.isEmpty()) return;
+            Map<String, PendingWrite> batch = new LinkedHashMap<>();
+            for (String conversationId : List.copyOf(pending.keySet())) {
+                PendingWrite write = pending.remove(conversationId);
+                if (write != null) batch.put(conversationId, write);
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // keep the batch ahead of anything queued since
+                batch.forEach((conversationId, write) -> pending.merge(conversationId, write, (newer, failed) -> failed.then(newer)));
+                throw e;
+            }
+        }
+    }
+
+    private void write(Map<String, PendingWrite> batch) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> trims = new ArrayList<>();
+        batch.forEach((conversationId, write) -> {
+            if (write.clear()) deletes.add(new Object[]{conversationId});
+            write.appended().forEach(row -> inserts.add(new Object[]{conversationId, row.seq(), row.type().name(), row.content()}));
+            if (write.trimBefore() > 0) trims.add(new Object[]{conversationId, write.trimBefore()});
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deletes.isEmpty()) jdbcTemplate.batchUpdate("DELETE FROM chat_memory WHERE conversation_id = ?", deletes);
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO chat_memory (conversation_id, seq, message_type, content) VALUES (?, ?, ?, ?)", inserts);
+            }
+            if (!trims.isEmpty()) jdbcTemplate.batchUpdate("DELETE FROM chat_memory WHERE conversation_id = ? AND seq < ?", trims);
+        });
+        log.debug("Flushed {} conversations, {} messages", batch.size(), inserts.size());
+    }
+
+    /**
+     * Create the table unless it exists. Not every database supports {@code CREATE TABLE IF NOT EXISTS}, so the
+     * table is probed first.
+     */
+    private void initializeSchema() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_memory WHERE 1 = 0", Integer.class);
+        } catch (DataAccessException e) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            jdbcTemplate.execute(createTable(product));
+            log.info("Created chat_memory table in {}", product);
+        }
+    }
+
+    /**
+     * @return DDL for the chat memory table using the database's own types for a long and for unbounded text
+     */
+    static String createTable(String databaseProductName) {
+        return switch (DatabaseDriver.fromProductName(databaseProductName)) {
+            case POSTGRESQL -> TABLE.formatted("BIGINT", "TEXT");
+            case MYSQL, MARIADB -> TABLE.formatted("BIGINT", "LONGTEXT");
+            case SQLSERVER -> TABLE.formatted("BIGINT", "NVARCHAR(MAX)");
+            case ORACLE -> TABLE.formatted("NUMBER(19)", "CLOB");
+            default -> TABLE.formatted("BIGINT", "CLOB");
+        };
+    }
+
+    /**
+     * @return a key that orders turns by the time they were saved
+     */
+    private long nextSeq() {
+        long now = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+        return clock.updateAndGet(last -> Math.max(last + 1, now)) << 8 | instance;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush chat memory: {}", e.getMessage());
+        }
+    }
+
+    private static Message toMessage(Row row) {
+        Map<String, Object> metadata = Map.of(SEQ, row.seq());
+        return switch (row.type()) {
+            case USER -> UserMessage.builder().text(row.content()).metadata(metadata).build();
+            case ASSISTANT -> new AssistantMessage(row.content(), metadata);
+            case SYSTEM -> SystemMessage.builder().text(row.content()).metadata(metadata).build();
+            case TOOL -> throw new IllegalStateException("Tool responses are not stored in chat memory");
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,16 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Limits for answering a batch of questions
+ * @param maxConcurrentRetrievals vector store searches run at once across every batch
+ * @param maxConcurrentGenerations chat model calls run at once across every batch
+ * @param maxQuestions largest batch accepted in one request
+ */
+@ConfigurationProperties("app.batch")
+public record BatchProperties(@DefaultValue("8") int maxConcurrentRetrievals,
+                              @DefaultValue("4") int maxConcurrentGenerations,
+                              @DefaultValue("1000") int maxQuestions) {
+}
@@ -0,0 +1,24 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Where conversation memory is kept
+ * @param store {@code memory} keeps conversations in this JVM, {@code jdbc} shares them through the configured DataSource
+ * @param flushInterval how often queued conversation updates are written to the shared store
+ * @param batchSize queued conversations that trigger a write before the interval elapses
+ * @param cacheSize conversations kept in the local read-through cache
+ * @param cacheTtl how long a cached conversation is trusted before it is re-read, bounding staleness across pods
+ * @param initializeSchema create the chat memory table on startup if it does not exist, with the column types of the configured database
+ */
+@ConfigurationProperties("app.chat.memory")
+public record ChatMemoryProperties(@DefaultValue("memory") String store,
+                                   @DefaultValue("100ms") Duration flushInterval,
+                                   @DefaultValue("500") int batchSize,
+                                   @DefaultValue("1000") int cacheSize,
+                                   @DefaultValue("5s") Duration cacheTtl,
+                                   @DefaultValue("true") boolean initializeSchema) {
+}
@@ -0,0 +1,23 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Limits for parsing crawled documents into the vector store
+ * @param streaming parse PDF and DOCX files page by page instead of reading each into one document
+ * @param maxDocumentSize documents larger than this are rejected part way through the download
+ * @param parseTimeout parsing a single document is abandoned after this long, not counting the time its pages take to store
+ * @param maxSegmentChars text buffered before a segment is handed to the splitter, even mid page
+ * @param extractMainContent index only the main content of HTML pages, split at their headings
+ */
+@ConfigurationProperties("app.ingest")
+public record IngestProperties(@DefaultValue("true") boolean streaming,
+                               @DefaultValue("50MB") DataSize maxDocumentSize,
+                               @DefaultValue("60s") Duration parseTimeout,
+                               @DefaultValue("20000") int maxSegmentChars,
+                               @DefaultValue("true") boolean extractMainContent) {
+}
@@ -0,0 +1,38 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Latency and failure handling for chat model calls
+ * @param deadline maximum time a caller waits for a completion, including any hedged attempt
+ * @param hedge settings for launching a second attempt when the first is slow
+ * @param circuitBreaker settings for failing fast while the model is degraded
+ */
+@ConfigurationProperties("app.llm")
+public record LlmProperties(@DefaultValue("30s") Duration deadline,
+                            @DefaultValue Hedge hedge,
+                            @DefaultValue CircuitBreaker circuitBreaker) {
+
+    /**
+     * @param enabled whether to send a hedged second request
+     * @param percentile latency percentile of recent calls after which the hedge is sent
+     * @param minDelay lower bound on the hedge delay, also used until enough samples are collected
+     * @param minSamples number of recent latencies needed before the percentile is trusted
+     */
+    public record Hedge(@DefaultValue("false") boolean enabled,
+                        @DefaultValue("95") double percentile,
+                        @DefaultValue("2s") Duration minDelay,
+                        @DefaultValue("20") int minSamples) {
+    }
+
+    /**
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param openDuration how long the circuit stays open before a trial call is allowed
+     */
+    public record CircuitBreaker(@DefaultValue("5") int failureThreshold,
+                                 @DefaultValue("30s") Duration openDuration) {
+    }
+}
@@ -0,0 +1,115 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Sites served by this deployment. Every chunk indexed for a site is tagged with its id under
+ * {@link #METADATA_KEY}, and retrieval for a request routed to a site only searches that site's partition.
+ * @param sites site definitions, the first one answers requests that match no site
+ * @param site the single site setting from before multiple sites, its {@code baseUrl} replaces the default site's
+ */
+@ConfigurationProperties("app")
+public record SiteProperties(@DefaultValue List<Site> sites, LegacySite site) {
+    public static final String METADATA_KEY = "site";
+    private static final Pattern ID = Pattern.compile("[a-z0-9][a-z0-9-]*");
+
+    @ConstructorBinding
+    public SiteProperties {
+        if (sites.isEmpty()) throw new IllegalArgumentException("At least one site must be configured under app.sites");
+        if (site != null && site.baseUrl() != null) {
+            // deployments still overriding app.site.baseUrl keep crawling the site they point at
+            List<Site> mapped = new ArrayList<>(sites);
+            Site first = mapped.getFirst();
+            mapped.set(0, new Site(first.id(), first.name(), site.baseUrl(), first.hosts(), first.refreshInterval()));
+            sites = mapped;
+        }
+        Set<String> ids = new HashSet<>();
+        Set<String> hosts = new HashSet<>();
+        for (Site configured : sites) {
+            if (!ids.add(configured.id())) throw new IllegalArgumentException("Duplicate site id " + configured.id());
+            // the crawler stays on the base url's host, so a page url belongs to exactly one site
+            if (!hosts.add(configured.crawlHost())) {
+                throw new IllegalArgumentException("Site " + configured.id() + " crawls the same host as another site");
+            }
+        }
+        sites = List.copyOf(sites);
+    }
+
+    public SiteProperties(List<Site> sites) {
+        this(sites, null);
+    }
+
+    /**
+     * @param baseUrl superseded by {@code app.sites[0].baseUrl}
+     */
+    public record LegacySite(String baseUrl) {
+    }
+
+    /**
+     * @param id tenant key used in request paths and as the partition tag on every chunk
+     * @param name display name used in prompts, defaults to the id
+     * @param baseUrl page the crawl starts from, only links on the same host are followed
+     * @param hosts request host names routed to this site
+     * @param refreshInterval delay between the end of one crawl and the start of the next, or unset to crawl only
+     *                        when the site has nothing indexed at startup
+     */
+    public record Site(String id, String name, String baseUrl, @DefaultValue List<String> hosts, Duration refreshInterval) {
+        public Site {
+            if (id == null || !ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("Site id must be lower case letters, digits and dashes: " + id);
+            }
+            if (baseUrl == null || URI.create(baseUrl).getHost() == null) {
+                throw new IllegalArgumentException("Site " + id + " needs an absolute baseUrl: " + baseUrl);
+            }
+            if (name == null) name = id;
+            hosts = hosts == null ? List.of() : List.copyOf(hosts);
+        }
+
+        /**
+         * @return host name the crawl is limited to
+         */
+        public String crawlHost() {
+            return URI.create(baseUrl).getHost().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @return vector store filter matching only this site's chunks
+         */
+        public String filterExpression() {
+            // the id pattern keeps quotes out of the expression
+            return METADATA_KEY + " == '" + id + "'";
+        }
+    }
+
+    public Site defaultSite() {
+        return sites.getFirst();
+    }
+
+    public Optional<Site> find(String id) {
+        return sites.stream().filter(site -> site.id().equals(id)).findFirst();
+    }
+
+    /**
+     * @param host request host name, without port
+     * @return the site listing this host, or the default site
+     */
+    public Site forHost(String host) {
+        if (host == null) return defaultSite();
+        return sites.stream()
+                .filter(site -> site.hosts().stream().anyMatch(host::equalsIgnoreCase))
+                .findFirst()
+                .orElse(defaultSite());
+    }
+}
@@ -0,0 +1,36 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import net.starkenberg.ai.springaiagent.services.IndexSnapshot;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Index snapshot files used to seed or capture the vector store without re-crawling
+ * @param importPath snapshot to load when the vector store is empty, instead of crawling the site
+ * @param exportPath snapshot to write, see {@code exportMode}
+ * @param quantization how embeddings are stored in exported snapshots
+ * @param batchSize chunks per vector store upsert when importing
+ * @param parallelism concurrent upsert batches when importing
+ * @param exportMode when the snapshot is written and where its chunks come from
+ */
+@ConfigurationProperties("app.snapshot")
+public record SnapshotProperties(Path importPath,
+                                 Path exportPath,
+                                 @DefaultValue("FLOAT32") IndexSnapshot.Quantization quantization,
+                                 @DefaultValue("500") int batchSize,
+                                 @DefaultValue("4") int parallelism,
+                                 @DefaultValue("CRAWL") ExportMode exportMode) {
+
+    public enum ExportMode {
+        /**
+         * Capture chunks while a startup crawl indexes every site into an empty index
+         */
+        CRAWL,
+        /**
+         * Read every chunk stored in the index, at startup and after every complete refresh crawl
+         */
+        INDEX
+    }
+}
@@ -1,32 +1,129 @@
 package net.starkenberg.ai.springaiagent.controllers;
 
-import jakarta.servlet.http.HttpSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import net.starkenberg.ai.springaiagent.chat.Answer;
 import net.starkenberg.ai.springaiagent.chat.CustomerSupportAssistant;
 import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.chat.SearchResult;
+import net.starkenberg.ai.springaiagent.config.BatchProperties;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.services.BatchQuestionService;
+import net.starkenberg.ai.springaiagent.services.SearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Chat endpoints for every configured site. A request is routed to the site named in its path
+ * ({@code /sites/{site}/ai}), otherwise to the site listing its host name, otherwise to the default site.
+ * Conversations are identified by the {@value #CONVERSATION_HEADER} header rather than the HTTP session,
+ * so any instance can continue one without sticky sessions.
+ */
 @RestController
-@RequestMapping("/ai")
+@RequestMapping({"/ai", "/sites/{site}/ai"})
 @RequiredArgsConstructor
 public class ChatController {
+    static final String CONVERSATION_HEADER = "X-Conversation-Id";
+    private static final Pattern CONVERSATION_ID = Pattern.compile("[A-Za-z0-9._-]{1,128}");
 
     private final CustomerSupportAssistant assistant;
+    private final BatchQuestionService batchQuestionService;
+    private final SearchService searchService;
+    private final SiteProperties siteProperties;
+    private final BatchProperties batchProperties;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    String generation(@RequestParam(name = "question", defaultValue = "What are Amplify Federal's core values?") String userInput, HttpSession session) {
-        return this.assistant.chat(session.getId(),userInput);
+    String generation(@PathVariable(name = "site", required = false) String site,
+                      @RequestParam(name = "question", defaultValue = "What are Amplify Federal's core values?") String userInput,
+                      @RequestHeader(name = CONVERSATION_HEADER, required = false) String conversationId,
+                      HttpServletRequest request, HttpServletResponse response) {
+        return this.assistant.chat(site(site, request), conversation(conversationId, response), userInput);
     }
 
     @PostMapping
-    Answer getAnswer(@RequestBody Question question,  HttpSession session) {
-        return new Answer(this.assistant.chat(session.getId(), question.question()));
+    Answer getAnswer(@PathVariable(name = "site", required = false) String site, @RequestBody Question question,
+                     @RequestHeader(name = CONVERSATION_HEADER, required = false) String conversationId,
+                     HttpServletRequest request, HttpServletResponse response) {
+        return new Answer(this.assistant.chat(site(site, request), conversation(conversationId, response), question.question()));
+    }
+
+    @GetMapping("/search")
+    List<SearchResult> search(@PathVariable(name = "site", required = false) String site, @RequestParam(name = "query") String query,
+                              @RequestParam(name = "topK", required = false) Integer topK, HttpServletRequest request) {
+        return this.searchService.search(query, topK, site(site, request).id());
+    }
+
+    /**
+     * Answer a list of questions without conversation memory, streaming one JSON object per line as each completes
+     */
+    @PostMapping("/batch")
+    ResponseEntity<StreamingResponseBody> getBatchAnswers(@PathVariable(name = "site", required = false) String site,
+                                                          @RequestBody List<Question> questions, HttpServletRequest request) {
+        SiteProperties.Site target = site(site, request);
+        // once the stream has started the status is committed, so reject what would fail the whole batch up front
+        if (questions.size() > this.batchProperties.maxQuestions()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch holds at most " + this.batchProperties.maxQuestions() + " questions");
+        }
+        for (int i = 0; i < questions.size(); i++) {
+            if (questions.get(i) == null || questions.get(i).question() == null || questions.get(i).question().isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Question " + i + " is blank");
+            }
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                this.batchQuestionService.answerAll(target, questions, answer -> {
+                    try {
+                        out.write(this.objectMapper.writeValueAsBytes(answer));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * @return the conversation id sent by the client, or a new one, echoed in the response for the next question
+     */
+    private String conversation(String conversationId, HttpServletResponse response) {
+        if (conversationId == null || conversationId.isBlank()) {
+            conversationId = UUID.randomUUID().toString();
+        } else if (!CONVERSATION_ID.matcher(conversationId).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid " + CONVERSATION_HEADER);
+        }
+        response.setHeader(CONVERSATION_HEADER, conversationId);
+        return conversationId;
+    }
+
+    private SiteProperties.Site site(String site, HttpServletRequest request) {
+        if (site == null) return this.siteProperties.forHost(request.getServerName());
+        return this.siteProperties.find(site)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown site " + site));
     }
 
 }
@@ -0,0 +1,28 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.EmbedBatch")
+@Label("Embed Batch")
+@Category({"Spring AI Agent", "Embedding"})
+@Description("One call for embeddings, or a batch answered from cached or preloaded vectors")
+@StackTrace(false)
+public class EmbedBatchEvent extends jdk.jfr.Event {
+    @Label("Key")
+    @Description("Page URL or conversation ID")
+    public String key;
+
+    @Label("Inputs")
+    public int inputs;
+
+    @Label("Characters")
+    public long characters;
+
+    @Label("Cached")
+    @Description("Answered without calling the embedding model")
+    public boolean cached;
+}
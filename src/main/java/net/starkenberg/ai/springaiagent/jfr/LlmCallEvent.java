@@ -0,0 +1,31 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.LlmCall")
+@Label("LLM Call")
+@Category({"Spring AI Agent", "Chat Model"})
+@Description("Blocking chat model call, including any hedged attempt")
+@StackTrace(false)
+public class LlmCallEvent extends jdk.jfr.Event {
+    @Label("Key")
+    @Description("Page URL or conversation ID")
+    public String key;
+
+    @Label("Prompt Characters")
+    public long promptCharacters;
+
+    @Label("Response Characters")
+    public long responseCharacters;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Outcome")
+    @Description("success, deadline, failed, interrupted or circuit-open")
+    public String outcome;
+}
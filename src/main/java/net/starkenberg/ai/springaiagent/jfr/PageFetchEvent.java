@@ -0,0 +1,23 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.PageFetch")
+@Label("Page Fetch")
+@Category({"Spring AI Agent", "Crawl"})
+@Description("Crawler fetching and parsing one HTML page")
+@StackTrace(false)
+public class PageFetchEvent extends jdk.jfr.Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Links")
+    public int links;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,27 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.Parse")
+@Label("Parse")
+@Category({"Spring AI Agent", "Ingest"})
+@Description("Turning one crawled page or document into text")
+@StackTrace(false)
+public class ParseEvent extends jdk.jfr.Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Mode")
+    @Description("extract, stream or tika; stream events span the splits and upserts of each segment")
+    public String mode;
+
+    @Label("Characters")
+    public long characters;
+
+    @Label("Documents")
+    public int documents;
+}
@@ -0,0 +1,37 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+/**
+ * Carries the page URL or conversation ID being worked on by the current thread, so events raised deep in the
+ * pipeline (embedding, retrieval, chat model calls) can be tied back to the page or conversation that caused them.
+ */
+public final class PipelineContext {
+    private static final ThreadLocal<String> KEY = new ThreadLocal<>();
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private PipelineContext() {
+    }
+
+    /**
+     * @param key page URL or conversation ID
+     * @return scope that restores the previous key when closed
+     */
+    public static Scope open(String key) {
+        String previous = KEY.get();
+        KEY.set(key);
+        return () -> {
+            if (previous == null) KEY.remove();
+            else KEY.set(previous);
+        };
+    }
+
+    /**
+     * @return the current page URL or conversation ID, or null outside any scope
+     */
+    public static String key() {
+        return KEY.get();
+    }
+}
@@ -0,0 +1,27 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.Retrieval")
+@Label("Retrieval")
+@Category({"Spring AI Agent", "Vector Store"})
+@Description("Similarity search against the vector store, including embedding the query")
+@StackTrace(false)
+public class RetrievalEvent extends jdk.jfr.Event {
+    @Label("Key")
+    @Description("Page URL or conversation ID")
+    public String key;
+
+    @Label("Query Length")
+    public int queryLength;
+
+    @Label("Top K")
+    public int topK;
+
+    @Label("Results")
+    public int results;
+}
@@ -0,0 +1,23 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.Split")
+@Label("Split")
+@Category({"Spring AI Agent", "Ingest"})
+@Description("Splitting parsed documents into chunks")
+@StackTrace(false)
+public class SplitEvent extends jdk.jfr.Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Documents")
+    public int documents;
+
+    @Label("Chunks")
+    public int chunks;
+}
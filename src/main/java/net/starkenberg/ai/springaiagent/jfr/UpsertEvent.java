@@ -0,0 +1,24 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.starkenberg.ai.Upsert")
+@Label("Upsert")
+@Category({"Spring AI Agent", "Vector Store"})
+@Description("Adding chunks to the vector store, including their embedding")
+@StackTrace(false)
+public class UpsertEvent extends jdk.jfr.Event {
+    @Label("Key")
+    @Description("Page URL or conversation ID")
+    public String key;
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Characters")
+    public long characters;
+}
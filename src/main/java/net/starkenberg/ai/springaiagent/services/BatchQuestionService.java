@@ -0,0 +1,124 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.chat.BatchAnswer;
+import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.config.BatchProperties;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+public class BatchQuestionService {
+
+    private final OpenAIService openAIService;
+    private final CachingEmbeddingModel embeddingModel;
+    private final Semaphore retrievalPermits;
+    private final Semaphore generationPermits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BatchQuestionService(OpenAIService openAIService, CachingEmbeddingModel embeddingModel, BatchProperties properties) {
+        this.openAIService = openAIService;
+        this.embeddingModel = embeddingModel;
+        this.retrievalPermits = new Semaphore(properties.maxConcurrentRetrievals());
+        this.generationPermits = new Semaphore(properties.maxConcurrentGenerations());
+    }
+
+    /**
+     * Answer every question without chat memory. Queries are embedded together up front, then retrievals and chat model
+     * calls run in parallel, each limited to its configured concurrency. If the sink throws, for example because
+     * the client disconnected, the questions still being answered are cancelled.
+     * @param site site whose documents answer the questions
+     * @param questions questions to answer, none of them blank
+     * @param sink receives each answer on the calling thread, in completion order
+     */
+    public void answerAll(SiteProperties.Site site, List<Question> questions, Consumer<BatchAnswer> sink) throws InterruptedException {
+        long embedStart = System.nanoTime();
+        // the primed embeddings stay pinned until every retrieval in the batch has run
+        try (CachingEmbeddingModel.Primed primed = embeddingModel.prime(questions.stream().map(Question::question).toList())) {
+            long embeddingMillis = millisSince(embedStart);
+
+            BlockingQueue<BatchAnswer> completed = new LinkedBlockingQueue<>();
+            List<Future<?>> tasks = new ArrayList<>(questions.size());
+            for (int i = 0; i < questions.size(); i++) {
+                int index = i;
+                String question = questions.get(i).question();
+                tasks.add(executor.submit(() -> {
+                    try {
+                        completed.add(answer(site, index, question, embeddingMillis));
+                    } catch (RuntimeException e) {
+                        completed.add(new BatchAnswer(index, question, null, e.getMessage(), embeddingMillis, 0, 0, 0));
+                    }
+                }));
+            }
+            try {
+                for (int i = 0; i < questions.size(); i++) {
+                    sink.accept(completed.take());
+                }
+            } finally {
+                // nobody reads the answers still running once the sink has failed, stop their model calls
+                tasks.forEach(task -> task.cancel(true));
+            }
+        }
+    }
+
+    private BatchAnswer answer(SiteProperties.Site site, int index, String question, long embeddingMillis) {
+        try (PipelineContext.Scope scope = PipelineContext.open(site.id() + ":batch-" + index)) {
+            return answerInScope(site, index, question, embeddingMillis);
+        }
+    }
+
+    private BatchAnswer answerInScope(SiteProperties.Site site, int index, String question, long embeddingMillis) {
+        long start = System.nanoTime();
+        long retrievalMillis = 0;
+        long generationStart = System.nanoTime();
+        try {
+            List<Document> documents;
+            retrievalPermits.acquire();
+            try {
+                documents = openAIService.retrieve(site, question);
+            } finally {
+                retrievalPermits.release();
+            }
+            retrievalMillis = millisSince(start);
+            generationStart = System.nanoTime();
+            generationPermits.acquire();
+            try {
+                generationStart = System.nanoTime();
+                String answer = openAIService.generate(site, question, documents);
+                return new BatchAnswer(index, question, answer, null, embeddingMillis, retrievalMillis,
+                        millisSince(generationStart), millisSince(start));
+            } finally {
+                generationPermits.release();
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            // a cancelled batch has no one to report the failure to
+            if (!Thread.currentThread().isInterrupted()) log.error("Batch question {} failed: {}", index, e.getMessage());
+            return new BatchAnswer(index, question, null, e.getMessage(), embeddingMillis, retrievalMillis,
+                    millisSince(generationStart), millisSince(start));
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,239 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.jfr.EmbedBatchEvent;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the OpenAI embedding model with a small LRU cache of query embeddings.
+ * The vector store embeds each search query one at a time, so callers that already know
+ * a set of queries can {@link #prime(List)} them in a single embedding call up front, held until the batch is done.
+ * Document embeddings that are already known, such as those read from an index snapshot, can be
+ * {@link #preload(List, List) preloaded} so the vector store upserts them without calling the model again.
+ */
+@Slf4j
+@Primary
+@Component
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final Map<String, float[]> cache;
+    private final Map<String, Pin> primed = new ConcurrentHashMap<>();
+    private final Map<String, float[]> preloaded = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<String, float[]>> recording = new ThreadLocal<>();
+
+    @Autowired
+    public CachingEmbeddingModel(OpenAiEmbeddingModel delegate, @Value("${app.embedding.queryCacheSize:1024}") int maxEntries,
+                                 @Value("${app.embedding.maxBatchSize:2048}") int maxBatchSize) {
+        this((EmbeddingModel) delegate, maxEntries, maxBatchSize);
+    }
+
+    CachingEmbeddingModel(EmbeddingModel delegate, int maxEntries, int maxBatchSize) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Embeddings held by {@link #prime(List)} until released
+     */
+    public interface Primed extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Pin(float[] embedding, int holders) {
+    }
+
+    /**
+     * Embed every query not already known in as few calls to the underlying model as its input limit allows,
+     * {@code maxBatchSize} queries per call. The embeddings are held outside
+     * the LRU cache until the returned handle is closed, so a batch larger than the cache is never evicted
+     * before it is used.
+     * @param queries search queries that are about to be run against the vector store
+     * @return handle that releases the primed embeddings
+     */
+    public Primed prime(List<String> queries) {
+        Map<String, float[]> pinned = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String query : queries.stream().distinct().toList()) {
+            float[] known = lookup(query);
+            if (known != null) pinned.put(query, known);
+            else missing.add(query);
+        }
+        for (int from = 0; from < missing.size(); from += maxBatchSize) {
+            List<String> chunk = missing.subList(from, Math.min(missing.size(), from + maxBatchSize));
+            EmbedBatchEvent event = new EmbedBatchEvent();
+            event.begin();
+            List<float[]> embeddings = delegate.embed(chunk);
+            commit(event, chunk.size(), chunk.stream().mapToLong(String::length).sum(), false);
+            for (int i = 0; i < chunk.size(); i++) {
+                pinned.put(chunk.get(i), embeddings.get(i));
+            }
+            log.debug("Primed {} query embeddings in one call", chunk.size());
+        }
+        // batches priming the same query share one pin, released when the last of them closes
+        pinned.forEach((query, embedding) -> primed.merge(query, new Pin(embedding, 1),
+                (current, added) -> new Pin(current.embedding(), current.holders() + 1)));
+        return () -> pinned.keySet().forEach(query -> primed.computeIfPresent(query,
+                (key, pin) -> pin.holders() == 1 ? null : new Pin(pin.embedding(), pin.holders() - 1)));
+    }
+
+    /**
+     * Document embeddings computed on the current thread while open
+     */
+    public interface Recording extends AutoCloseable {
+        /**
+         * @return the embedding computed for the document, or null if it was not embedded while recording
+         */
+        float[] embedding(String documentId);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Record the document embeddings computed on this thread, such as those the vector store computes when adding
+     * documents, so they can be reused exactly as stored
+     * @return recording to read the embeddings from, closed to stop recording
+     */
+    public Recording record() {
+        Map<String, float[]> recorded = new HashMap<>();
+        Map<String, float[]> previous = recording.get();
+        recording.set(recorded);
+        return new Recording() {
+            @Override
+            public float[] embedding(String documentId) {
+                return recorded.get(documentId);
+            }
+
+            @Override
+            public void close() {
+                if (previous == null) recording.remove();
+                else recording.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Hold known embeddings for documents that are about to be added to the vector store.
+     * Each embedding is handed out once, the next time its document is embedded.
+     * @param documents documents to be added
+     * @param embeddings embeddings in the same order as the documents
+     */
+    public void preload(List<Document> documents, List<float[]> embeddings) {
+        for (int i = 0; i < documents.size(); i++) {
+            preloaded.put(documents.get(i).getId(), embeddings.get(i));
+        }
+    }
+
+    /**
+     * Drop any preloaded embeddings still held for these documents, for example because adding them failed
+     */
+    public void release(List<Document> documents) {
+        documents.forEach(document -> preloaded.remove(document.getId()));
+    }
+
+    @Override
+    public float[] embed(String text) {
+        EmbedBatchEvent event = new EmbedBatchEvent();
+        event.begin();
+        float[] cached = lookup(text);
+        if (cached != null) {
+            commit(event, 1, text.length(), true);
+            return cached;
+        }
+        float[] embedding = delegate.embed(text);
+        cache.put(text, embedding);
+        commit(event, 1, text.length(), false);
+        return embedding;
+    }
+
+    private float[] lookup(String query) {
+        Pin pin = primed.get(query);
+        return pin != null ? pin.embedding() : cache.get(query);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        EmbedBatchEvent event = new EmbedBatchEvent();
+        event.begin();
+        List<float[]> known = documents.stream().map(document -> preloaded.get(document.getId())).toList();
+        boolean cached = known.stream().allMatch(Objects::nonNull);
+        List<float[]> embeddings;
+        if (cached) {
+            documents.forEach(document -> preloaded.remove(document.getId()));
+            embeddings = known;
+        } else {
+            embeddings = delegate.embed(documents, options, batchingStrategy);
+        }
+        Map<String, float[]> recorded = recording.get();
+        if (recorded != null) {
+            for (int i = 0; i < documents.size(); i++) {
+                recorded.put(documents.get(i).getId(), embeddings.get(i));
+            }
+        }
+        if (event.isEnabled()) {
+            commit(event, documents.size(), documents.stream().mapToLong(document -> document.getText() == null ? 0 : document.getText().length()).sum(), cached);
+        }
+        return embeddings;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        EmbedBatchEvent event = new EmbedBatchEvent();
+        event.begin();
+        EmbeddingResponse response = delegate.call(request);
+        if (event.isEnabled()) {
+            commit(event, request.getInstructions().size(), request.getInstructions().stream().mapToLong(String::length).sum(), false);
+        }
+        return response;
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private static void commit(EmbedBatchEvent event, int inputs, long characters, boolean cached) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = PipelineContext.key();
+            event.inputs = inputs;
+            event.characters = characters;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+}
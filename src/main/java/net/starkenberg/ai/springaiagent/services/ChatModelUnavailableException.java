@@ -0,0 +1,15 @@
+package net.starkenberg.ai.springaiagent.services;
+
+/**
+ * The chat model missed its deadline, failed, or is behind an open circuit breaker
+ */
+public class ChatModelUnavailableException extends RuntimeException {
+
+    public ChatModelUnavailableException(String message) {
+        super(message);
+    }
+
+    public ChatModelUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,40 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * Answer built from retrieved documents alone, used when the chat model can not be reached
+ */
+public final class DegradedAnswer {
+    public static final String NOT_FOUND = "I am sorry, I can not find the information requested.";
+    public static final String PREFIX = "I am having trouble answering right now, but here is what I found on the %s website:";
+    /**
+     * Number of documents quoted in a degraded answer
+     */
+    public static final int DOCUMENTS = 3;
+    private static final int EXCERPT_LENGTH = 300;
+
+    private DegradedAnswer() {
+    }
+
+    /**
+     * @param site site the documents were retrieved from
+     * @param documents retrieved documents, most relevant first
+     * @return excerpts of the first few documents with their source URLs, or {@link #NOT_FOUND}
+     */
+    public static String from(SiteProperties.Site site, List<Document> documents) {
+        if (documents == null || documents.isEmpty()) return NOT_FOUND;
+        StringBuilder answer = new StringBuilder(PREFIX.formatted(site.name()));
+        for (Document document : documents.subList(0, Math.min(DOCUMENTS, documents.size()))) {
+            String text = document.getText() == null ? "" : document.getText().strip();
+            if (text.length() > EXCERPT_LENGTH) text = text.substring(0, EXCERPT_LENGTH) + "...";
+            answer.append("\n\n").append(text);
+            Object url = document.getMetadata().get("url");
+            if (url != null) answer.append("\n(").append(url).append(")");
+        }
+        return answer.toString();
+    }
+}
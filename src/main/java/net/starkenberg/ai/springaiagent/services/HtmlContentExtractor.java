@@ -0,0 +1,164 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.IngestProperties;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reduces a crawled HTML page to its main content, one {@link Document} per heading section.
+ * Navigation, headers, footers, forms and scripts are dropped before embedding, and the heading
+ * path of each section is kept as metadata so chunks never span two sections.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HtmlContentExtractor {
+    private static final String BOILERPLATE = "script, style, noscript, template, svg, iframe, nav, footer, aside, form, "
+            + "button, select, [role=navigation], [role=banner], [role=contentinfo], [role=search], [aria-hidden=true], "
+            + ".menu, .nav, .navbar, .breadcrumb, .breadcrumbs, .sidebar, .footer, .cookie, .cookie-banner, .skip-link";
+    // headers are site chrome at the top of the page, but inside an article they hold its title
+    private static final String PAGE_HEADERS = "header, .header";
+    private static final String CONTENT_ROOTS = "article, main, [role=main]";
+    private static final List<String> MAIN_CANDIDATES = List.of("main", "article", "[role=main]", "#content", "#main", ".content");
+    private static final Set<String> BLOCKS = Set.of("p", "div", "section", "li", "tr", "td", "th", "br", "blockquote",
+            "pre", "dt", "dd", "figcaption", "table", "ul", "ol");
+
+    /**
+     * @param sections main content split at headings
+     * @param tokensBefore estimated tokens in all text on the page
+     * @param tokensAfter estimated tokens in the extracted sections
+     */
+    public record Extraction(List<Document> sections, int tokensBefore, int tokensAfter) {
+    }
+
+    private final IngestProperties properties;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    /**
+     * @return true if crawled pages should be reduced to their main content instead of read whole by Tika
+     */
+    public boolean isEnabled() {
+        return properties.extractMainContent();
+    }
+
+    /**
+     * Extract the main content of a page. The page is modified, so call this once the crawler is done with it.
+     * @param url page url recorded in each section's metadata
+     * @param page parsed page
+     * @return the sections and token counts before and after extraction
+     */
+    public Extraction extract(String url, org.jsoup.nodes.Document page) {
+        Element body = page.body();
+        int tokensBefore = tokenCountEstimator.estimate(body.text());
+        String title = page.title();
+        body.select(BOILERPLATE).remove();
+        for (Element header : body.select(PAGE_HEADERS)) {
+            if (header.closest(CONTENT_ROOTS) == null) header.remove();
+        }
+
+        SectionCollector collector = new SectionCollector(url, title);
+        NodeTraversor.traverse(collector, mainContent(body));
+        List<Document> sections = collector.finish();
+
+        int tokensAfter = sections.stream().mapToInt(section -> tokenCountEstimator.estimate(section.getText())).sum();
+        log.info("Extracted {}: {} sections, {} -> {} tokens", url, sections.size(), tokensBefore, tokensAfter);
+        return new Extraction(sections, tokensBefore, tokensAfter);
+    }
+
+    private Element mainContent(Element body) {
+        for (String candidate : MAIN_CANDIDATES) {
+            Element element = body.selectFirst(candidate);
+            if (element != null && !element.text().isBlank()) return element;
+        }
+        return body;
+    }
+
+    /**
+     * Walks the content in document order, starting a new section at every heading
+     */
+    private static class SectionCollector implements NodeVisitor {
+        private final String url;
+        private final String title;
+        private final List<Document> sections = new ArrayList<>();
+        private final String[] headingPath = new String[6];
+        private StringBuilder text = new StringBuilder();
+        private Element currentHeading;
+        private int level;
+
+        SectionCollector(String url, String title) {
+            this.url = url;
+            this.title = title;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (currentHeading != null) return;
+            if (node instanceof Element element && isHeading(element)) {
+                flush();
+                level = element.normalName().charAt(1) - '0';
+                headingPath[level - 1] = element.text().strip();
+                for (int i = level; i < headingPath.length; i++) headingPath[i] = null;
+                currentHeading = element;
+            } else if (node instanceof TextNode textNode) {
+                text.append(textNode.isBlank() ? " " : textNode.text());
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (node == currentHeading) {
+                currentHeading = null;
+            } else if (currentHeading == null && node instanceof Element element && BLOCKS.contains(element.normalName())) {
+                text.append('\n');
+            }
+        }
+
+        List<Document> finish() {
+            flush();
+            return sections;
+        }
+
+        private void flush() {
+            String body = text.toString().replaceAll("[ \\t\\x0B\\f\\r]+", " ").replaceAll("\\s*\\n\\s*", "\n").strip();
+            text = new StringBuilder();
+            if (body.isEmpty()) return;
+            List<String> path = new ArrayList<>();
+            for (String heading : headingPath) {
+                if (heading != null && !heading.isEmpty()) path.add(heading);
+            }
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("url", url);
+            metadata.put("source", url);
+            if (title != null && !title.isBlank()) metadata.put("title", title);
+            metadata.put("section", sections.size() + 1);
+            if (!path.isEmpty()) {
+                metadata.put("heading", path.get(path.size() - 1));
+                metadata.put("headingPath", String.join(" > ", path));
+                metadata.put("headingLevel", level);
+            }
+            // lead with the heading so each chunk's embedding carries its section context
+            String content = path.isEmpty() ? body : path.get(path.size() - 1) + "\n" + body;
+            sections.add(new Document(content, metadata));
+        }
+
+        private static boolean isHeading(Element element) {
+            String name = element.normalName();
+            return name.length() == 2 && name.charAt(0) == 'h' && name.charAt(1) >= '1' && name.charAt(1) <= '6';
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary snapshot of indexed chunks and their embeddings.
+ * <p>
+ * The file is a gzip stream holding a header (magic, version, quantization) followed by one record per chunk:
+ * id, text, metadata as JSON and the embedding, each length prefixed. Records are written and read one at a time
+ * so neither side has to hold the whole index in memory.
+ */
+public final class IndexSnapshot {
+    private static final int MAGIC = 0x41465853; // "AFXS"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * How embedding values are stored. FLOAT16 halves and INT8 quarters the size of each vector;
+     * INT8 stores one scale per vector so values are recovered to within scale / 2.
+     */
+    public enum Quantization { FLOAT32, FLOAT16, INT8 }
+
+    public record Entry(String id, String text, Map<String, Object> metadata, float[] embedding) {
+    }
+
+    private IndexSnapshot() {
+    }
+
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Quantization quantization;
+        private final ObjectMapper objectMapper;
+        private long count;
+
+        public Writer(OutputStream target, Quantization quantization, ObjectMapper objectMapper) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(target, BUFFER_SIZE), BUFFER_SIZE));
+            this.quantization = quantization;
+            this.objectMapper = objectMapper;
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(quantization.ordinal());
+        }
+
+        public void write(Entry entry) throws IOException {
+            out.writeBoolean(true);
+            writeBytes(entry.id().getBytes(StandardCharsets.UTF_8));
+            writeBytes(entry.text().getBytes(StandardCharsets.UTF_8));
+            writeBytes(objectMapper.writeValueAsBytes(entry.metadata()));
+            writeVector(entry.embedding());
+            count++;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVector(float[] vector) throws IOException {
+            out.writeInt(vector.length);
+            switch (quantization) {
+                case FLOAT32 -> {
+                    for (float v : vector) out.writeFloat(v);
+                }
+                case FLOAT16 -> {
+                    for (float v : vector) out.writeShort(Float.floatToFloat16(v));
+                }
+                case INT8 -> {
+                    float maxAbs = 0;
+                    for (float v : vector) maxAbs = Math.max(maxAbs, Math.abs(v));
+                    float scale = maxAbs / 127f;
+                    out.writeFloat(scale);
+                    for (float v : vector) out.writeByte(scale == 0 ? 0 : Math.round(v / scale));
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeBoolean(false);
+            out.close();
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Quantization quantization;
+        private final ObjectMapper objectMapper;
+
+        public Reader(InputStream source, ObjectMapper objectMapper) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, BUFFER_SIZE), BUFFER_SIZE));
+            this.objectMapper = objectMapper;
+            if (in.readInt() != MAGIC) throw new IOException("Not an index snapshot");
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("Unsupported index snapshot version " + version);
+            this.quantization = Quantization.values()[in.readUnsignedByte()];
+        }
+
+        public Quantization quantization() {
+            return quantization;
+        }
+
+        /**
+         * @return the next entry, or null at the end of the snapshot
+         */
+        public Entry next() throws IOException {
+            if (!in.readBoolean()) return null;
+            String id = new String(readBytes(), StandardCharsets.UTF_8);
+            String text = new String(readBytes(), StandardCharsets.UTF_8);
+            Map<String, Object> metadata = objectMapper.readValue(readBytes(), METADATA_TYPE);
+            return new Entry(id, text, metadata, readVector());
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        private float[] readVector() throws IOException {
+            float[] vector = new float[in.readInt()];
+            switch (quantization) {
+                case FLOAT32 -> {
+                    for (int i = 0; i < vector.length; i++) vector[i] = in.readFloat();
+                }
+                case FLOAT16 -> {
+                    for (int i = 0; i < vector.length; i++) vector[i] = Float.float16ToFloat(in.readShort());
+                }
+                case INT8 -> {
+                    float scale = in.readFloat();
+                    for (int i = 0; i < vector.length; i++) vector[i] = in.readByte() * scale;
+                }
+            }
+            return vector;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.config.SnapshotProperties;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Exports indexed chunks with their embeddings to an {@link IndexSnapshot} and seeds the vector store from one.
+ * The Spring AI vector store has no way to list what it holds, so snapshots are either captured while the loader
+ * indexes or, in {@link SnapshotProperties.ExportMode#INDEX} mode, read from the Pinecone index itself.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndexSnapshotService {
+
+    /**
+     * Receives every batch of chunks added during an indexing run. The snapshot only replaces the file at the
+     * export path when {@link #commit()} is called; closing an export that was not committed discards it.
+     */
+    public interface Export extends AutoCloseable {
+        Export NONE = new Export() {
+            @Override
+            public void capture(List<Document> documents, Runnable upsert) {
+                upsert.run();
+            }
+
+            @Override
+            public void commit() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        /**
+         * Run the upsert of a batch and record the embeddings the vector store computed for it, so the snapshot
+         * holds exactly what was stored. The upsert must embed on the calling thread.
+         * @param documents chunks being added
+         * @param upsert adds the chunks to the vector store
+         */
+        void capture(List<Document> documents, Runnable upsert);
+
+        /**
+         * Finish the snapshot and move it into place, call only once the indexing run has completed
+         */
+        void commit() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final SnapshotProperties properties;
+    private final VectorStore vectorStore;
+    private final CachingEmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final PineconeIndexReader indexReader;
+
+    /**
+     * @return true if a snapshot to import is configured and present
+     */
+    public boolean canImport() {
+        return properties.importPath() != null && Files.isRegularFile(properties.importPath());
+    }
+
+    /**
+     * Upsert the chunks of the given sites from the configured snapshot, reusing their embeddings, so sites that
+     * are already indexed are left alone. Batches are added in parallel, with at most {@code parallelism} batches
+     * held in memory at once.
+     * @param sites ids of the sites to import
+     * @return number of chunks imported for each site, sites the snapshot holds nothing for are absent
+     */
+    public Map<String, Long> importSnapshot(Set<String> sites) throws IOException, InterruptedException {
+        Path path = properties.importPath();
+        int parallelism = Math.max(1, properties.parallelism());
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<?>> batches = new ArrayList<>();
+        Map<String, Long> counts = new HashMap<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+             IndexSnapshot.Reader reader = new IndexSnapshot.Reader(Files.newInputStream(path), objectMapper)) {
+            log.info("Importing {} snapshot {}", reader.quantization(), path);
+            List<Document> documents = new ArrayList<>();
+            List<float[]> embeddings = new ArrayList<>();
+            for (IndexSnapshot.Entry entry = reader.next(); entry != null; entry = reader.next()) {
+                if (!(entry.metadata().get(SiteProperties.METADATA_KEY) instanceof String site) || !sites.contains(site)) continue;
+                documents.add(Document.builder().id(entry.id()).text(entry.text()).metadata(entry.metadata()).build());
+                embeddings.add(entry.embedding());
+                counts.merge(site, 1L, Long::sum);
+                if (documents.size() >= properties.batchSize()) {
+                    batches.add(submit(executor, inFlight, documents, embeddings));
+                    documents = new ArrayList<>();
+                    embeddings = new ArrayList<>();
+                }
+            }
+            if (!documents.isEmpty()) batches.add(submit(executor, inFlight, documents, embeddings));
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Snapshot import failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return counts;
+    }
+
+    /**
+     * @return true if snapshots are exported by reading the whole index rather than captured while crawling
+     */
+    public boolean exportsIndex() {
+        return properties.exportPath() != null && properties.exportMode() == SnapshotProperties.ExportMode.INDEX;
+    }
+
+    /**
+     * Export every chunk stored in the index with the embedding it was stored with, so an index that already exists
+     * can be moved to another environment or kept to roll back to. The snapshot at the export path is only replaced
+     * once the whole index has been read.
+     * @return number of chunks exported
+     */
+    public synchronized long exportIndex() throws IOException {
+        Path path = properties.exportPath();
+        Path partial = partial(path);
+        IndexSnapshot.Writer writer = new IndexSnapshot.Writer(Files.newOutputStream(partial), properties.quantization(), objectMapper);
+        log.info("Exporting {} snapshot of the index to {}", properties.quantization(), path);
+        try {
+            try (writer) {
+                indexReader.forEachBatch(entries -> {
+                    for (IndexSnapshot.Entry entry : entries) {
+                        writer.write(entry);
+                    }
+                });
+            }
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        log.info("Exported {} chunks to {}", writer.count(), path);
+        return writer.count();
+    }
+
+    /**
+     * Start capturing a snapshot of the chunks added during this indexing run. Entries are written to a
+     * {@code .partial} file next to the export path, so an interrupted run never leaves a truncated snapshot
+     * where a later startup would import it.
+     * @return an export writing to the configured path, or {@link Export#NONE} if export is not configured or the
+     * snapshot is read from the index instead
+     */
+    public Export startExport() throws IOException {
+        Path path = properties.exportPath();
+        if (path == null || exportsIndex()) return Export.NONE;
+        Path partial = partial(path);
+        IndexSnapshot.Writer writer = new IndexSnapshot.Writer(Files.newOutputStream(partial), properties.quantization(), objectMapper);
+        log.info("Exporting {} snapshot to {}", properties.quantization(), path);
+        return new Export() {
+            private boolean closed;
+            private boolean committed;
+
+            @Override
+            public void capture(List<Document> documents, Runnable upsert) {
+                // keep the vectors the store computed with its own batching, so export costs no extra calls
+                List<float[]> embeddings = new ArrayList<>(documents.size());
+                try (CachingEmbeddingModel.Recording recording = embeddingModel.record()) {
+                    upsert.run();
+                    for (Document document : documents) {
+                        float[] embedding = recording.embedding(document.getId());
+                        if (embedding == null) {
+                            throw new IllegalStateException("No embedding recorded for " + document.getId()
+                                    + ", the vector store must embed on the calling thread");
+                        }
+                        embeddings.add(embedding);
+                    }
+                }
+                // sites are crawled in parallel, keep each batch's entries together in the file
+                synchronized (writer) {
+                    try {
+                        for (int i = 0; i < documents.size(); i++) {
+                            Document document = documents.get(i);
+                            writer.write(new IndexSnapshot.Entry(document.getId(), document.getText(), document.getMetadata(), embeddings.get(i)));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+
+            @Override
+            public void commit() throws IOException {
+                closeWriter();
+                Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                committed = true;
+                log.info("Exported {} chunks to {}", writer.count(), path);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (committed) return;
+                try {
+                    closeWriter();
+                } finally {
+                    Files.deleteIfExists(partial);
+                    log.warn("Indexing did not complete, discarded snapshot {}", partial);
+                }
+            }
+
+            private void closeWriter() throws IOException {
+                synchronized (writer) {
+                    if (closed) return;
+                    closed = true;
+                    writer.close();
+                }
+            }
+        };
+    }
+
+    private static Path partial(Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        return path.resolveSibling(path.getFileName() + ".partial");
+    }
+
+    private Future<?> submit(ExecutorService executor, Semaphore inFlight, List<Document> documents, List<float[]> embeddings)
+            throws InterruptedException {
+        inFlight.acquire();
+        return executor.submit(() -> {
+            try (PipelineContext.Scope scope = PipelineContext.open(properties.importPath().toString())) {
+                embeddingModel.preload(documents, embeddings);
+                vectorStore.add(documents);
+            } finally {
+                // a failed add leaves its embeddings unused, do not hold them for the rest of the run
+                embeddingModel.release(documents);
+                inFlight.release();
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import net.starkenberg.ai.springaiagent.jfr.RetrievalEvent;
+import net.starkenberg.ai.springaiagent.jfr.UpsertEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pinecone.PineconeVectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Wraps the Pinecone vector store to record upsert and retrieval JFR events, including those made inside
+ * Spring AI advisors, tagged with the page or conversation being worked on.
+ */
+@Primary
+@Component
+public class InstrumentedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+
+    @Autowired
+    public InstrumentedVectorStore(PineconeVectorStore delegate) {
+        this((VectorStore) delegate);
+    }
+
+    InstrumentedVectorStore(VectorStore delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        UpsertEvent event = new UpsertEvent();
+        event.begin();
+        delegate.add(documents);
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = PipelineContext.key();
+            event.chunks = documents.size();
+            event.characters = documents.stream().mapToLong(document -> document.getText() == null ? 0 : document.getText().length()).sum();
+            event.commit();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        RetrievalEvent event = new RetrievalEvent();
+        event.begin();
+        List<Document> documents = delegate.similaritySearch(request);
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = PipelineContext.key();
+            event.queryLength = request.getQuery().length();
+            event.topK = request.getTopK();
+            event.results = documents == null ? 0 : documents.size();
+            event.commit();
+        }
+        return documents;
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.starkenberg.ai.springaiagent.chat.Answer;
 import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
@@ -28,14 +29,43 @@ public class OpenAIService {
     @Value("classpath:/templates/rag-prompt-template.st")
     private Resource ragPromptTemplate;
 
-    public Answer answer(Question question) {
+    public Answer answer(SiteProperties.Site site, Question question) {
+        return new Answer(generate(site, question.question(), retrieve(site, question.question())));
+    }
+
+    /**
+     * Find the documents most relevant to the question
+     * @param site site whose documents are searched
+     * @param question user question used as the similarity query
+     * @return top matching documents from the vector store
+     */
+    public List<Document> retrieve(SiteProperties.Site site, String question) {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query(question)
+                .topK(5)
+                .filterExpression(site.filterExpression())
+                .build());
+    }
+
+    /**
+     * Ask the chat model to answer the question grounded only in the supplied documents
+     * @param site site the question is about
+     * @param question user question
+     * @param documents documents retrieved for the question
+     * @return the model's answer text, or excerpts of the documents if the chat model is unavailable
+     */
+    public String generate(SiteProperties.Site site, String question, List<Document> documents) {
         // Use a non-empty template for SystemPromptTemplate
-        List<Document> documents = vectorStore.similaritySearch(SearchRequest.builder().query(question.question()).topK(5).build());
         List<String> contentList = documents.stream().map(Document::getFormattedContent).toList();
         PromptTemplate promptTemplate = new PromptTemplate(ragPromptTemplate);
-        Prompt prompt = promptTemplate.create(Map.of("input", question.question(), "documents", String.join("\n", contentList)));
-        contentList.forEach(System.out::println);
-        ChatResponse response = chatModel.call(prompt);
-        return new Answer(response.getResult().getOutput().getText());
+        Prompt prompt = promptTemplate.create(Map.of("site", site.name(), "input", question, "documents", String.join("\n", contentList)));
+        contentList.forEach(content -> log.debug("Context document: {}", content));
+        try {
+            ChatResponse response = chatModel.call(prompt);
+            return response.getResult().getOutput().getText();
+        } catch (ChatModelUnavailableException e) {
+            log.warn("Falling back to retrieved documents for {}: {}", site.id(), e.getMessage());
+            return DegradedAnswer.from(site, documents);
+        }
     }
 }
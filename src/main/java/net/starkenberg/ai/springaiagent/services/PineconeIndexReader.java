@@ -0,0 +1,98 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.util.JsonFormat;
+import io.pinecone.clients.Index;
+import io.pinecone.clients.Pinecone;
+import io.pinecone.proto.FetchResponse;
+import io.pinecone.proto.ListItem;
+import io.pinecone.proto.ListResponse;
+import io.pinecone.proto.Vector;
+import org.springframework.ai.vectorstore.pinecone.PineconeVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads every chunk stored in the Pinecone index, with its embedding, through Pinecone's own client. The Spring AI
+ * vector store can only search, so this is how an index that already exists is exported.
+ * Listing vector ids is only supported by serverless indexes.
+ */
+@Component
+public class PineconeIndexReader {
+    // Pinecone lists at most 100 ids per page
+    private static final int PAGE_SIZE = 100;
+    private static final TypeReference<Map<String, Object>> METADATA = new TypeReference<>() {
+    };
+
+    /**
+     * Receives the chunks of one listed page
+     */
+    @FunctionalInterface
+    public interface Batch {
+        void accept(List<IndexSnapshot.Entry> entries) throws IOException;
+    }
+
+    private final PineconeVectorStore vectorStore;
+    private final ObjectMapper objectMapper;
+    private final String indexName;
+    private final String namespace;
+    private final String contentFieldName;
+
+    public PineconeIndexReader(PineconeVectorStore vectorStore, ObjectMapper objectMapper,
+                               @Value("${spring.ai.vectorstore.pinecone.index-name}") String indexName,
+                               @Value("${spring.ai.vectorstore.pinecone.namespace:}") String namespace,
+                               @Value("${spring.ai.vectorstore.pinecone.content-field-name:document_content}") String contentFieldName) {
+        this.vectorStore = vectorStore;
+        this.objectMapper = objectMapper;
+        this.indexName = indexName;
+        this.namespace = namespace;
+        this.contentFieldName = contentFieldName;
+    }
+
+    /**
+     * Page through every vector in the index
+     * @param batch receives each page's chunks as they are fetched
+     */
+    public void forEachBatch(Batch batch) throws IOException {
+        if (!(vectorStore.getNativeClient().orElse(null) instanceof Pinecone pinecone)) {
+            throw new IllegalStateException("The vector store does not expose a Pinecone client");
+        }
+        Index index = pinecone.getIndexConnection(indexName);
+        String next = null;
+        do {
+            ListResponse page = next == null ? index.list(namespace, PAGE_SIZE) : index.list(namespace, PAGE_SIZE, next);
+            List<String> ids = page.getVectorsList().stream().map(ListItem::getId).toList();
+            if (!ids.isEmpty()) batch.accept(fetch(index, ids));
+            next = page.hasPagination() && !page.getPagination().getNext().isEmpty() ? page.getPagination().getNext() : null;
+        } while (next != null);
+    }
+
+    private List<IndexSnapshot.Entry> fetch(Index index, List<String> ids) throws IOException {
+        FetchResponse response = index.fetch(ids, namespace);
+        List<IndexSnapshot.Entry> entries = new ArrayList<>(ids.size());
+        // keep the listed order, fetch returns a map
+        for (String id : ids) {
+            Vector vector = response.getVectorsMap().get(id);
+            // deleted between listing and fetching
+            if (vector == null) continue;
+            Map<String, Object> metadata = vector.hasMetadata()
+                    ? new HashMap<>(objectMapper.readValue(JsonFormat.printer().print(vector.getMetadata()), METADATA))
+                    : new HashMap<>();
+            // the store keeps the chunk text in metadata, adding the chunk back puts it there again
+            Object text = metadata.remove(contentFieldName);
+            float[] embedding = new float[vector.getValuesCount()];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = vector.getValues(i);
+            }
+            entries.add(new IndexSnapshot.Entry(id, text == null ? "" : text.toString(), metadata, embedding));
+        }
+        return entries;
+    }
+}
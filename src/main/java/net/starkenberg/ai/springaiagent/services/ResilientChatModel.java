@@ -0,0 +1,196 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.config.LlmProperties;
+import net.starkenberg.ai.springaiagent.jfr.LlmCallEvent;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps the OpenAI chat model so every blocking call is bounded by a deadline, optionally hedged with a second
+ * attempt once the first is slower than a recent latency percentile, and guarded by a circuit breaker.
+ * Failures surface as {@link ChatModelUnavailableException} so callers can fall back to a degraded answer.
+ */
+@Slf4j
+@Primary
+@Component
+public class ResilientChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmProperties properties;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    public ResilientChatModel(OpenAiChatModel delegate, LlmProperties properties) {
+        this((ChatModel) delegate, properties);
+    }
+
+    ResilientChatModel(ChatModel delegate, LlmProperties properties) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.circuitBreaker = new CircuitBreaker(properties.circuitBreaker().failureThreshold(),
+                properties.circuitBreaker().openDuration());
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        LlmCallEvent event = new LlmCallEvent();
+        event.begin();
+        event.outcome = "failed";
+        try {
+            ChatResponse response = call(prompt, event);
+            event.outcome = "success";
+            if (event.isEnabled() && response.getResult() != null && response.getResult().getOutput().getText() != null) {
+                event.responseCharacters = response.getResult().getOutput().getText().length();
+            }
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.key = PipelineContext.key();
+                event.promptCharacters = prompt.getContents().length();
+                event.commit();
+            }
+        }
+    }
+
+    private ChatResponse call(Prompt prompt, LlmCallEvent event) {
+        if (!circuitBreaker.tryAcquire()) {
+            event.outcome = "circuit-open";
+            throw new ChatModelUnavailableException("Chat model circuit breaker is open");
+        }
+        long start = System.nanoTime();
+        long deadline = start + properties.deadline().toNanos();
+        CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger();
+        List<Future<?>> attempts = new ArrayList<>();
+        try {
+            attempts.add(launch(prompt, result, pending));
+            Duration hedgeDelay = hedgeDelay();
+            if (hedgeDelay != null && System.nanoTime() + hedgeDelay.toNanos() < deadline) {
+                try {
+                    return succeeded(result.get(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS), start);
+                } catch (TimeoutException e) {
+                    log.debug("Chat model slower than {} ms, sending hedged request", hedgeDelay.toMillis());
+                    attempts.add(launch(prompt, result, pending));
+                }
+            }
+            return succeeded(result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS), start);
+        } catch (TimeoutException e) {
+            event.outcome = "deadline";
+            circuitBreaker.recordFailure();
+            throw new ChatModelUnavailableException("Chat model missed its " + properties.deadline().toMillis() + " ms deadline");
+        } catch (ExecutionException e) {
+            circuitBreaker.recordFailure();
+            throw new ChatModelUnavailableException("Chat model call failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            event.outcome = "interrupted";
+            Thread.currentThread().interrupt();
+            circuitBreaker.recordFailure();
+            throw new ChatModelUnavailableException("Interrupted waiting for chat model", e);
+        } finally {
+            event.attempts = attempts.size();
+            // the losing or timed out attempt is no longer needed
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return delegate.stream(prompt);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private Future<?> launch(Prompt prompt, CompletableFuture<ChatResponse> result, AtomicInteger pending) {
+        pending.incrementAndGet();
+        return executor.submit(() -> {
+            try {
+                result.complete(delegate.call(prompt));
+            } catch (Throwable t) {
+                // only fail the call once no other attempt can still win
+                if (pending.decrementAndGet() == 0) result.completeExceptionally(t);
+            }
+        });
+    }
+
+    private ChatResponse succeeded(ChatResponse response, long start) {
+        circuitBreaker.recordSuccess();
+        latencies.record(System.nanoTime() - start);
+        return response;
+    }
+
+    private Duration hedgeDelay() {
+        LlmProperties.Hedge hedge = properties.hedge();
+        if (!hedge.enabled()) return null;
+        long minNanos = hedge.minDelay().toNanos();
+        long percentile = latencies.percentile(hedge.percentile(), hedge.minSamples());
+        return Duration.ofNanos(Math.max(minNanos, percentile));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ring buffer of the most recent successful call latencies
+     */
+    static class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return the latency at the given percentile, or 0 when fewer than {@code minSamples} are recorded
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) return 0;
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return sorted[Math.clamp(index, 0, size - 1)];
+        }
+    }
+}
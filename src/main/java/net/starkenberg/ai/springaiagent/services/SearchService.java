@@ -0,0 +1,49 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import lombok.RequiredArgsConstructor;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.chat.SearchResult;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Retrieval only search over an indexed site. No chat memory and no chat model call,
+ * so results come back at vector store latency.
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchService {
+    public static final int MAX_TOP_K = 20;
+
+    private final VectorStore vectorStore;
+    private final SiteProperties siteProperties;
+
+    @Tool(description = "Search a website for passages relevant to a query. "
+            + "Returns ranked text chunks with their source URL and similarity score.")
+    public List<SearchResult> search(@ToolParam(description = "Natural language search query") String query,
+                                     @ToolParam(description = "Number of passages to return, 1 to 20", required = false) Integer topK,
+                                     @ToolParam(description = "Id of the site to search, defaults to the primary site", required = false) String site) {
+        SiteProperties.Site target = site == null ? siteProperties.defaultSite() : siteProperties.find(site)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown site " + site));
+        int k = topK == null ? SearchRequest.DEFAULT_TOP_K : Math.clamp(topK, 1, MAX_TOP_K);
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                        .query(query)
+                        .topK(k)
+                        .filterExpression(target.filterExpression())
+                        .build())
+                .stream()
+                .map(SearchService::toResult)
+                .toList();
+    }
+
+    private static SearchResult toResult(Document document) {
+        Object url = document.getMetadata().getOrDefault("url", document.getMetadata().get("source"));
+        return new SearchResult(document.getText(), url == null ? null : url.toString(), document.getScore());
+    }
+}
@@ -0,0 +1,238 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import lombok.RequiredArgsConstructor;
+import net.starkenberg.ai.springaiagent.config.IngestProperties;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.stereotype.Service;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Parses large documents through Tika's SAX events and hands text to the caller a page (PDF) or
+ * section (DOCX) at a time, so only one segment of a document is held in memory while it is split and embedded.
+ */
+@Service
+@RequiredArgsConstructor
+public class StreamingDocumentParser {
+    private static final Set<String> HEADINGS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Set<String> BLOCKS = Set.of("p", "li", "tr", "br", "h1", "h2", "h3", "h4", "h5", "h6");
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final IngestProperties properties;
+
+    /**
+     * @return true if the url points at a document type that should be parsed as a stream
+     */
+    public boolean supports(String url) {
+        return properties.streaming() && (url.endsWith("pdf") || url.endsWith("docx"));
+    }
+
+    /**
+     * Parse the document at the url, emitting one {@link Document} per page or section
+     * @param url document to fetch and parse
+     * @param sink receives each segment as soon as it is complete
+     */
+    public void parse(String url, Consumer<Document> sink) throws Exception {
+        parse(new UrlResource(url) {
+            @Override
+            protected void customizeConnection(URLConnection con) throws IOException {
+                super.customizeConnection(con);
+                // a stalled download fails the read instead of blocking the parser thread indefinitely
+                int timeout = (int) Math.max(1, properties.parseTimeout().toMillis());
+                con.setConnectTimeout(timeout);
+                con.setReadTimeout(timeout);
+            }
+        }, url, sink);
+    }
+
+    /**
+     * Parsing runs on its own thread and hands segments back through a queue, so the timeout also covers the
+     * download and PDFBox loading the document, which raise no SAX events. Segments are passed to the sink on the
+     * calling thread, so nothing more reaches the sink once this method has returned or thrown. Only time spent
+     * waiting on the parser counts against the timeout, so a slow sink never fails a document that parses in time.
+     */
+    void parse(Resource resource, String url, Consumer<Document> sink) throws Exception {
+        long deadline = System.nanoTime() + properties.parseTimeout().toNanos();
+        // the parser runs at most one segment ahead of the sink
+        BlockingQueue<Document> segments = new ArrayBlockingQueue<>(1);
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            SegmentingHandler handler = new SegmentingHandler(url, segments);
+            try (InputStream in = new SizeLimitedInputStream(resource.getInputStream(), properties.maxDocumentSize().toBytes())) {
+                new AutoDetectParser().parse(in, handler, new Metadata(), new ParseContext());
+            }
+            return null;
+        });
+        Thread.ofVirtual().name("document-parser").start(task);
+        try {
+            while (!task.isDone() || !segments.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("Parsing " + url + " exceeded " + properties.parseTimeout().toSeconds() + "s");
+                }
+                Document segment = segments.poll(Math.min(remaining, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+                if (segment != null) {
+                    long handedOver = System.nanoTime();
+                    sink.accept(segment);
+                    // splitting, embedding and upserting the segment does not count as parsing
+                    deadline += System.nanoTime() - handedOver;
+                }
+            }
+            task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        } finally {
+            // interrupts the parser at its next SAX event or when it waits to hand over a segment
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Buffers text until a page or section ends, or the buffer reaches the segment limit
+     */
+    private class SegmentingHandler extends DefaultHandler {
+        private final String url;
+        private final BlockingQueue<Document> segments;
+        private final StringBuilder buffer = new StringBuilder();
+        private int divDepth;
+        private int pageDivDepth = -1;
+        private int page;
+        private int section;
+        private boolean inHead;
+
+        SegmentingHandler(String url, BlockingQueue<Document> segments) {
+            this.url = url;
+            this.segments = segments;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            checkCancelled();
+            if ("head".equals(localName)) inHead = true;
+            if ("div".equals(localName)) {
+                divDepth++;
+                if (pageDivDepth < 0 && "page".equals(attributes.getValue("class"))) {
+                    flush();
+                    pageDivDepth = divDepth;
+                    page++;
+                }
+            }
+            // a new heading starts a new section in documents without pages
+            if (page == 0 && HEADINGS.contains(localName)) flush();
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("head".equals(localName)) inHead = false;
+            if ("div".equals(localName)) {
+                if (divDepth == pageDivDepth) {
+                    flush();
+                    pageDivDepth = -1;
+                }
+                divDepth--;
+            }
+            if (BLOCKS.contains(localName)) buffer.append('\n');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            checkCancelled();
+            if (inHead) return;
+            buffer.append(ch, start, length);
+            if (buffer.length() >= properties.maxSegmentChars()) flush();
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (!inHead) buffer.append(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            flush();
+        }
+
+        private void flush() throws SAXException {
+            String text = buffer.toString().strip();
+            buffer.setLength(0);
+            if (text.isEmpty()) return;
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("url", url);
+            metadata.put("source", url);
+            if (page > 0) metadata.put("page", page);
+            metadata.put("section", ++section);
+            try {
+                segments.put(new Document(text, metadata));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Parsing " + url + " was cancelled");
+            }
+        }
+
+        private void checkCancelled() throws SAXException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new SAXException("Parsing " + url + " was cancelled");
+            }
+        }
+    }
+
+    /**
+     * Fails the read once more than the limit has been consumed rather than silently truncating the document
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) throw new IOException("Document is larger than " + limit + " bytes");
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package net.starkenberg.ai.springaiagent.services;
 
 import lombok.extern.slf4j.Slf4j;
+import net.starkenberg.ai.springaiagent.jfr.PageFetchEvent;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
@@ -13,22 +13,30 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @Service
 public class WebScraperService {
 
-    private final String baseUrl;
-
-    public WebScraperService(@Value("${app.site.baseUrl}") String baseUrl) {
-        this.baseUrl = baseUrl;
+    /**
+     * Crawl a site's home page and all children to return
+     * @param baseUrl page to start from, only links on the same host are followed
+     * @return Set of pages and docs to load in the vector store
+     */
+    public Set<String> crawlSite(String baseUrl) {
+        return crawlSite(baseUrl, (url, page) -> {});
     }
 
     /**
-     * Crawl the Amplify home page and all children to return
+     * Crawl a site's home page and all children, handing each parsed HTML page to the visitor
+     * once its links have been collected so the page does not need to be fetched again
+     * @param baseUrl page to start from, only links on the same host are followed
+     * @param pageVisitor receives the url and parsed page of every HTML page fetched, exceptions it throws are not
+     *                    caught and end the crawl, so a visitor that indexes pages should handle its own failures
      * @return Set of pages and docs to load in the vector store
      */
-    public Set<String> crawlSite() {
+    public Set<String> crawlSite(String baseUrl, BiConsumer<String, Document> pageVisitor) {
         Set<String> visited = new HashSet<>();
         Queue<String> toVisit = new LinkedList<>();
         URI baseUri = URI.create(baseUrl);
@@ -37,8 +45,11 @@ public class WebScraperService {
             String currentUrl = toVisit.poll();
             // if adding to Set fails or if it's not a page that we can get more links from just continue
             if (!visited.add(currentUrl) || currentUrl.endsWith("pdf") || currentUrl.endsWith("docx")) continue;
+            PageFetchEvent event = new PageFetchEvent();
+            event.begin();
+            Document doc = null;
             try {
-                Document doc = Jsoup.connect(currentUrl).get();
+                doc = Jsoup.connect(currentUrl).get();
                 Elements links = doc.select("a[href]");
                 for (Element link : links) {
                     String href = stripFragment(link.absUrl("href"));
@@ -50,9 +61,19 @@ public class WebScraperService {
                         toVisit.add(href);
                     }
                 }
+                event.end();
+                event.links = links.size();
+                event.succeeded = true;
             } catch (Exception e) {
                 log.error("Failed to fetch: {} \n {}", currentUrl, e.getMessage());
+            } finally {
+                if (event.shouldCommit()) {
+                    event.url = currentUrl;
+                    event.commit();
+                }
             }
+            // outside the fetch error handling so an indexing failure is not reported as a failed fetch
+            if (doc != null) pageVisitor.accept(currentUrl, doc);
         }
         return visited;
     }
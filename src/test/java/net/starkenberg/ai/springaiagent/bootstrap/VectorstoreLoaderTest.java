@@ -1,20 +1,39 @@
 package net.starkenberg.ai.springaiagent.bootstrap;
 
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.services.HtmlContentExtractor;
+import net.starkenberg.ai.springaiagent.services.IndexSnapshotService;
+import net.starkenberg.ai.springaiagent.services.StreamingDocumentParser;
 import net.starkenberg.ai.springaiagent.services.WebScraperService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -22,6 +41,8 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class VectorstoreLoaderTest {
+    private static final SiteProperties.Site SITE =
+            new SiteProperties.Site("example", "Example", "https://example.com", List.of(), null);
 
     @Mock
     private WebScraperService webScraperService;
@@ -29,11 +50,25 @@ class VectorstoreLoaderTest {
     @Mock
     private VectorStore vectorStore;
 
+    @Mock
+    private IndexSnapshotService snapshotService;
+
+    @Mock
+    private StreamingDocumentParser streamingParser;
+
+    @Mock
+    private HtmlContentExtractor contentExtractor;
+
     private VectorstoreLoader vectorstoreLoader;
 
     @BeforeEach
     void setUp() {
-        vectorstoreLoader = new VectorstoreLoader(webScraperService, vectorStore);
+        vectorstoreLoader = loader(new SiteProperties(List.of(SITE)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        vectorstoreLoader.shutdown();
     }
 
     @Test
@@ -43,17 +78,18 @@ class VectorstoreLoaderTest {
         urls.add("https://example.com");
 
         // Mock the vectorStore to return empty list for similaritySearch
-        when(vectorStore.similaritySearch("amplifyfederal")).thenReturn(Collections.emptyList());
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
 
         // Mock the webScraperService to return our test URLs
-        when(webScraperService.crawlSite()).thenReturn(urls);
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenReturn(urls);
+        when(snapshotService.startExport()).thenReturn(IndexSnapshotService.Export.NONE);
 
         // Act
         vectorstoreLoader.run();
 
         // Assert
-        verify(vectorStore).similaritySearch("amplifyfederal");
-        verify(webScraperService).crawlSite();
+        verify(vectorStore).similaritySearch(any(SearchRequest.class));
+        verify(webScraperService).crawlSite(eq(SITE.baseUrl()), any());
         // We can't verify the exact interactions with TikaDocumentReader and TokenTextSplitter
         // since they are created inside the method, but we can verify that vectorStore.add was called
         verify(vectorStore, times(1)).add(anyList());
@@ -65,15 +101,337 @@ class VectorstoreLoaderTest {
         List<Document> existingDocs = Collections.singletonList(mock(Document.class));
 
         // Mock the vectorStore to return non-empty list for similaritySearch
-        when(vectorStore.similaritySearch("amplifyfederal")).thenReturn(existingDocs);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(existingDocs);
 
         // Act
         vectorstoreLoader.run();
 
         // Assert
-        verify(vectorStore).similaritySearch("amplifyfederal");
+        verify(vectorStore).similaritySearch(any(SearchRequest.class));
         verifyNoInteractions(webScraperService);
         // Verify that vectorStore.add was not called
         verify(vectorStore, never()).add(anyList());
     }
+
+    @Test
+    void testRunImportsSnapshotInsteadOfCrawling() throws Exception {
+        // Arrange
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.canImport()).thenReturn(true);
+        when(snapshotService.importSnapshot(Set.of("example"))).thenReturn(Map.of("example", 42L));
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert
+        verify(snapshotService).importSnapshot(Set.of("example"));
+        verifyNoInteractions(webScraperService);
+        verify(vectorStore, never()).add(anyList());
+    }
+
+    @Test
+    void testSnapshotIsImportedOnlyForEmptySites() throws Exception {
+        // Arrange - example is indexed, docs and blog are empty, and the snapshot only holds docs
+        SiteProperties.Site docs = new SiteProperties.Site("docs", "Docs", "https://docs.example.com", List.of(), null);
+        SiteProperties.Site blog = new SiteProperties.Site("blog", "Blog", "https://blog.example.com", List.of(), null);
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(SITE, docs, blog)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            return request.getQuery().equals(SITE.name()) ? List.of(new Document("indexed")) : List.of();
+        });
+        when(snapshotService.canImport()).thenReturn(true);
+        when(snapshotService.importSnapshot(Set.of("docs", "blog"))).thenReturn(Map.of("docs", 42L));
+        when(webScraperService.crawlSite(eq(blog.baseUrl()), any())).thenReturn(Set.of());
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the indexed site is left alone, the site missing from the snapshot is crawled without exporting
+        verify(snapshotService).importSnapshot(Set.of("docs", "blog"));
+        verify(webScraperService).crawlSite(eq(blog.baseUrl()), any());
+        verify(webScraperService, never()).crawlSite(eq(SITE.baseUrl()), any());
+        verify(webScraperService, never()).crawlSite(eq(docs.baseUrl()), any());
+        verify(snapshotService, never()).startExport();
+    }
+
+    @Test
+    void testRunStoresLargeDocumentsPageByPage() throws Exception {
+        // Arrange
+        String pdf = "https://example.com/report.pdf";
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenReturn(Set.of(pdf));
+        when(snapshotService.startExport()).thenReturn(IndexSnapshotService.Export.NONE);
+        when(streamingParser.supports(pdf)).thenReturn(true);
+        doAnswer(invocation -> {
+            Consumer<Document> sink = invocation.getArgument(1);
+            sink.accept(new Document("Page one text", Map.of("url", pdf, "page", 1)));
+            sink.accept(new Document("Page two text", Map.of("url", pdf, "page", 2)));
+            return null;
+        }).when(streamingParser).parse(eq(pdf), any());
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert
+        verify(streamingParser).parse(eq(pdf), any());
+        verify(vectorStore, times(2)).add(anyList());
+    }
+
+    @Test
+    void testPartlyParsedDocumentIsRemoved() throws Exception {
+        // Arrange
+        String pdf = "https://example.com/report.pdf";
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenReturn(Set.of(pdf));
+        when(snapshotService.startExport()).thenReturn(IndexSnapshotService.Export.NONE);
+        when(streamingParser.supports(pdf)).thenReturn(true);
+        doAnswer(invocation -> {
+            Consumer<Document> sink = invocation.getArgument(1);
+            sink.accept(new Document("Page one text", Map.of("url", pdf, "page", 1)));
+            throw new TimeoutException("Parsing " + pdf + " exceeded 60s");
+        }).when(streamingParser).parse(eq(pdf), any());
+        ArgumentCaptor<Filter.Expression> captor = ArgumentCaptor.forClass(Filter.Expression.class);
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the site had nothing else indexed, so the page stored before the timeout is deleted again
+        verify(vectorStore, times(1)).add(anyList());
+        verify(vectorStore, times(1)).delete(captor.capture());
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        assertEquals(filter.eq("url", pdf).build(), captor.getValue());
+    }
+
+    @Test
+    void testRunIndexesMainContentFromCrawledPages() throws Exception {
+        // Arrange
+        String url = "https://example.com/about";
+        org.jsoup.nodes.Document page = org.jsoup.Jsoup.parse("<main><h1>About</h1><p>Core values</p></main>", url);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.startExport()).thenReturn(IndexSnapshotService.Export.NONE);
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenAnswer(invocation -> {
+            BiConsumer<String, org.jsoup.nodes.Document> visitor = invocation.getArgument(1);
+            visitor.accept(url, page);
+            return Set.of(url);
+        });
+        when(contentExtractor.isEnabled()).thenReturn(true);
+        when(contentExtractor.extract(url, page)).thenReturn(new HtmlContentExtractor.Extraction(
+                List.of(new Document("About\nCore values", Map.of("url", url, "heading", "About"))), 40, 4));
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the page is stored from its extracted content and not fetched again, with nothing to delete
+        verify(contentExtractor).extract(url, page);
+        verify(vectorStore, times(1)).add(anyList());
+        verify(vectorStore, never()).delete(any(Filter.Expression.class));
+        verifyNoInteractions(streamingParser);
+    }
+
+    @Test
+    void testPageThatFailsToIndexIsNotReadAgain() throws Exception {
+        // Arrange
+        String url = "https://example.com/about";
+        org.jsoup.nodes.Document page = org.jsoup.Jsoup.parse("<main><h1>About</h1><p>Core values</p></main>", url);
+        IndexSnapshotService.Export export = mock(IndexSnapshotService.Export.class);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.startExport()).thenReturn(export);
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenAnswer(invocation -> {
+            BiConsumer<String, org.jsoup.nodes.Document> visitor = invocation.getArgument(1);
+            visitor.accept(url, page);
+            return Set.of(url);
+        });
+        when(contentExtractor.isEnabled()).thenReturn(true);
+        when(contentExtractor.extract(url, page)).thenThrow(new IllegalStateException("extraction failed"));
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the page is removed rather than indexed a second time through Tika, and the run is incomplete
+        verify(vectorStore, never()).add(anyList());
+        verify(vectorStore).delete(any(Filter.Expression.class));
+        verifyNoInteractions(streamingParser);
+        verify(export, never()).commit();
+    }
+
+    @Test
+    void testRefreshReplacesChangedPagesAndRemovesMissingOnes() throws Exception {
+        // Arrange - the site is indexed, only the first refresh visits a page
+        String url = "https://example.com/about";
+        org.jsoup.nodes.Document page = org.jsoup.Jsoup.parse("<main><h1>About</h1><p>Core values</p></main>", url);
+        SiteProperties.Site refreshed = new SiteProperties.Site("example", "Example", "https://example.com", List.of(), Duration.ofMillis(50));
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(refreshed)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("indexed")));
+        when(webScraperService.crawlSite(eq(refreshed.baseUrl()), any())).thenAnswer(invocation -> {
+            BiConsumer<String, org.jsoup.nodes.Document> visitor = invocation.getArgument(1);
+            visitor.accept(url, page);
+            return Set.of(url);
+        }).thenThrow(new IllegalStateException("site unreachable"));
+        when(contentExtractor.isEnabled()).thenReturn(true);
+        when(contentExtractor.extract(url, page)).thenReturn(new HtmlContentExtractor.Extraction(
+                List.of(new Document("About\nCore values", Map.of("url", url, "heading", "About"))), 40, 4));
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        Filter.Expression removedPages = filter.and(filter.eq(SiteProperties.METADATA_KEY, SITE.id()), filter.nin("url", url)).build();
+
+        // Act
+        vectorstoreLoader.run();
+        verify(vectorStore, timeout(2000)).delete(removedPages);
+
+        // Assert - the page's new chunks are added first, then only its chunks from older crawls are deleted,
+        // then pages the crawl did not find
+        ArgumentCaptor<List<Document>> added = ArgumentCaptor.captor();
+        InOrder inOrder = inOrder(vectorStore);
+        inOrder.verify(vectorStore).add(added.capture());
+        Object crawl = added.getValue().getFirst().getMetadata().get(VectorstoreLoader.CRAWL_KEY);
+        assertNotNull(crawl);
+        inOrder.verify(vectorStore).delete(filter.and(filter.eq("url", url), filter.ne(VectorstoreLoader.CRAWL_KEY, crawl)).build());
+        inOrder.verify(vectorStore).delete(removedPages);
+    }
+
+    @Test
+    void testRefreshKeepsPreviousVersionOfDocumentThatFails() throws Exception {
+        // Arrange
+        String pdf = "https://example.com/report.pdf";
+        SiteProperties.Site refreshed = new SiteProperties.Site("example", "Example", "https://example.com", List.of(), Duration.ofMillis(50));
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(refreshed)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("indexed")));
+        when(webScraperService.crawlSite(eq(refreshed.baseUrl()), any())).thenReturn(Set.of(pdf));
+        when(streamingParser.supports(pdf)).thenReturn(true);
+        doThrow(new TimeoutException("Parsing " + pdf + " exceeded 60s")).when(streamingParser).parse(eq(pdf), any());
+
+        // Act
+        vectorstoreLoader.run();
+        verify(streamingParser, timeout(2000).atLeast(2)).parse(eq(pdf), any());
+
+        // Assert - neither the page nor the pages the incomplete crawl did not reach are removed
+        verify(vectorStore, never()).delete(any(Filter.Expression.class));
+    }
+
+    @Test
+    void testRunCrawlsSitesInParallelAndTagsChunks() throws Exception {
+        // Arrange
+        SiteProperties.Site docs = new SiteProperties.Site("docs", "Docs", "https://docs.example.com", List.of(), null);
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(SITE, docs)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.startExport()).thenReturn(IndexSnapshotService.Export.NONE);
+        when(contentExtractor.isEnabled()).thenReturn(true);
+        // each crawl waits for the other to start, so this only completes if the sites are crawled concurrently
+        CountDownLatch started = new CountDownLatch(2);
+        when(webScraperService.crawlSite(anyString(), any())).thenAnswer(invocation -> {
+            String baseUrl = invocation.getArgument(0);
+            BiConsumer<String, org.jsoup.nodes.Document> visitor = invocation.getArgument(1);
+            started.countDown();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            org.jsoup.nodes.Document page = org.jsoup.Jsoup.parse("<main><p>Welcome</p></main>", baseUrl);
+            visitor.accept(baseUrl, page);
+            return Set.of(baseUrl);
+        });
+        when(contentExtractor.extract(anyString(), any())).thenAnswer(invocation -> new HtmlContentExtractor.Extraction(
+                List.of(new Document("Welcome", Map.of("url", invocation.getArgument(0)))), 10, 1));
+        ArgumentCaptor<List<Document>> captor = ArgumentCaptor.captor();
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert
+        verify(vectorStore, times(2)).add(captor.capture());
+        Map<Object, Object> siteByUrl = new HashMap<>();
+        captor.getAllValues().stream().flatMap(List::stream)
+                .forEach(chunk -> siteByUrl.put(chunk.getMetadata().get("url"), chunk.getMetadata().get(SiteProperties.METADATA_KEY)));
+        assertEquals(Map.of("https://example.com", "example", "https://docs.example.com", "docs"), siteByUrl);
+    }
+
+    @Test
+    void testSiteWithRefreshIntervalIsCrawledAgain() throws Exception {
+        // Arrange
+        SiteProperties.Site refreshed = new SiteProperties.Site("example", "Example", "https://example.com", List.of(), Duration.ofMillis(50));
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(refreshed)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("indexed")));
+        when(webScraperService.crawlSite(eq(refreshed.baseUrl()), any())).thenReturn(Set.of());
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - nothing is crawled at startup because the site is indexed, but the refresh schedule still runs
+        verify(webScraperService, timeout(2000).atLeast(2)).crawlSite(eq(refreshed.baseUrl()), any());
+        verify(snapshotService, never()).startExport();
+    }
+
+    @Test
+    void testIndexIsExportedAtStartupAndAfterEachRefresh() throws Exception {
+        // Arrange
+        SiteProperties.Site refreshed = new SiteProperties.Site("example", "Example", "https://example.com", List.of(), Duration.ofMillis(50));
+        vectorstoreLoader.shutdown();
+        vectorstoreLoader = loader(new SiteProperties(List.of(refreshed)));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("indexed")));
+        when(webScraperService.crawlSite(eq(refreshed.baseUrl()), any())).thenReturn(Set.of());
+        when(snapshotService.exportsIndex()).thenReturn(true);
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the index that already exists is exported without crawling, then again once each refresh completes
+        verify(snapshotService, timeout(2000).atLeast(3)).exportIndex();
+        verify(webScraperService, atLeast(2)).crawlSite(eq(refreshed.baseUrl()), any());
+        verify(snapshotService, never()).startExport();
+    }
+
+    @Test
+    void testFailedCrawlDiscardsSnapshot() throws Exception {
+        // Arrange
+        IndexSnapshotService.Export export = mock(IndexSnapshotService.Export.class);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.startExport()).thenReturn(export);
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenThrow(new IllegalStateException("site unreachable"));
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert - the export is closed without being committed, so no truncated snapshot is left behind
+        verify(export, never()).commit();
+        verify(export).close();
+    }
+
+    @Test
+    void testCompleteCrawlCommitsSnapshot() throws Exception {
+        // Arrange
+        IndexSnapshotService.Export export = mock(IndexSnapshotService.Export.class);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(snapshotService.startExport()).thenReturn(export);
+        when(webScraperService.crawlSite(eq(SITE.baseUrl()), any())).thenReturn(Set.of());
+
+        // Act
+        vectorstoreLoader.run();
+
+        // Assert
+        verify(export).commit();
+        verify(export).close();
+    }
+
+    @Test
+    void testTagGivesUnchangedChunksTheSameId() {
+        // Arrange
+        Document chunk = new Document("Core values", Map.of("url", "https://example.com/about"));
+
+        // Act
+        Document first = VectorstoreLoader.tag(SITE, "crawl-1", "https://example.com/about", chunk);
+        Document second = VectorstoreLoader.tag(SITE, "crawl-2", "https://example.com/about", new Document("Core values"));
+        Document otherPage = VectorstoreLoader.tag(SITE, "crawl-1", "https://example.com/careers", chunk);
+
+        // Assert
+        assertEquals(first.getId(), second.getId());
+        assertNotEquals(first.getId(), otherPage.getId());
+        assertEquals("example", first.getMetadata().get(SiteProperties.METADATA_KEY));
+        assertEquals("https://example.com/about", first.getMetadata().get("url"));
+        assertEquals("crawl-2", second.getMetadata().get(VectorstoreLoader.CRAWL_KEY));
+    }
+
+    private VectorstoreLoader loader(SiteProperties siteProperties) {
+        return new VectorstoreLoader(siteProperties, webScraperService, vectorStore, snapshotService, streamingParser, contentExtractor);
+    }
 }
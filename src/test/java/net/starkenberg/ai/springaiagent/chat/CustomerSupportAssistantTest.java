@@ -1,17 +1,35 @@
 package net.starkenberg.ai.springaiagent.chat;
 
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.services.ChatModelUnavailableException;
+import net.starkenberg.ai.springaiagent.services.DegradedAnswer;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 class CustomerSupportAssistantTest {
 
+    private static final SiteProperties.Site SITE =
+            new SiteProperties.Site("amplify", "Amplify Federal", "https://amplifyfederal.com", List.of(), null);
+
     @Autowired
     private CustomerSupportAssistant customerSupportAssistant;
 
@@ -29,7 +47,7 @@ class CustomerSupportAssistantTest {
 
         // Act & Assert
         assertDoesNotThrow(() -> {
-            customerSupportAssistant.chat(chatId, userMessage);
+            customerSupportAssistant.chat(SITE, chatId, userMessage);
         });
     }
 
@@ -41,7 +59,7 @@ class CustomerSupportAssistantTest {
 
         // Act & Assert
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
-            customerSupportAssistant.chat(chatId, userMessage);
+            customerSupportAssistant.chat(SITE, chatId, userMessage);
         });
 
         // Verify the exception message
@@ -56,10 +74,37 @@ class CustomerSupportAssistantTest {
 
         // Act & Assert
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
-            customerSupportAssistant.chat(chatId, userMessage);
+            customerSupportAssistant.chat(SITE, chatId, userMessage);
         });
 
         // Verify the exception message
         assertTrue(exception.getMessage().contains("value cannot be null"));
     }
+
+    @Test
+    void testChatFallsBackToRetrievedDocumentsWhenModelUnavailable() {
+        // Arrange
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenThrow(new ChatModelUnavailableException("Chat model circuit breaker is open"));
+        VectorStore vectorStore = mock(VectorStore.class);
+        Document document = Document.builder()
+                .text("Amplify Federal values integrity and innovation.")
+                .metadata(Map.of("url", "https://amplifyfederal.com/about"))
+                .build();
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        when(vectorStore.similaritySearch(captor.capture())).thenReturn(List.of(document));
+        CustomerSupportAssistant assistant = new CustomerSupportAssistant(ChatClient.builder(chatModel), vectorStore,
+                MessageWindowChatMemory.builder().build());
+
+        // Act
+        String answer = assistant.chat(SITE, "test-chat-id", "What are Amplify Federal's core values?");
+
+        // Assert
+        assertTrue(answer.startsWith(DegradedAnswer.PREFIX.formatted("Amplify Federal")));
+        assertTrue(answer.contains("Amplify Federal values integrity and innovation."));
+        assertTrue(answer.contains("https://amplifyfederal.com/about"));
+        // every retrieval, including the advisor's, stays within the site's partition
+        assertTrue(captor.getAllValues().stream().allMatch(request ->
+                request.getFilterExpression() != null && request.getFilterExpression().toString().contains("amplify")));
+    }
 }
@@ -0,0 +1,279 @@
+package net.starkenberg.ai.springaiagent.chat;
+
+import net.starkenberg.ai.springaiagent.config.ChatMemoryProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedChatMemoryRepositoryTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private final List<SharedChatMemoryRepository> repositories = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("chat-memory-" + UUID.randomUUID())
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(SharedChatMemoryRepository::shutdown);
+        database.shutdown();
+    }
+
+    @Test
+    void testConversationIsSharedBetweenInstances() {
+        // Arrange
+        SharedChatMemoryRepository first = repository(500);
+        SharedChatMemoryRepository second = repository(500);
+        List<Message> messages = List.of(new UserMessage("What are your core values?"), new AssistantMessage("Integrity and innovation."));
+
+        // Act
+        first.saveAll("conversation-1", messages);
+        first.flush();
+
+        // Assert
+        List<Message> loaded = second.findByConversationId("conversation-1");
+        assertEquals(2, loaded.size());
+        assertEquals("What are your core values?", loaded.get(0).getText());
+        assertEquals("Integrity and innovation.", loaded.get(1).getText());
+        assertEquals(List.of("conversation-1"), second.findConversationIds());
+    }
+
+    @Test
+    void testWritesAreDeferredUntilFlush() {
+        // Arrange
+        SharedChatMemoryRepository repository = repository(500);
+
+        // Act
+        repository.saveAll("conversation-1", List.of(new UserMessage("hello")));
+        repository.saveAll("conversation-1", append(repository, "conversation-1", new AssistantMessage("hi")));
+
+        // Assert - served from the cache while nothing has reached the database
+        assertEquals(2, repository.findByConversationId("conversation-1").size());
+        assertEquals(0, rows());
+        repository.flush();
+        assertEquals(2, rows());
+    }
+
+    @Test
+    void testTurnsFromTwoInstancesAreBothKept() throws Exception {
+        // Arrange - both instances have read the same conversation
+        SharedChatMemoryRepository first = repository(500);
+        SharedChatMemoryRepository second = repository(500);
+        first.saveAll("conversation-1", List.of(new UserMessage("hello"), new AssistantMessage("hi")));
+        first.flush();
+        List<Message> firstView = new ArrayList<>(first.findByConversationId("conversation-1"));
+        List<Message> secondView = new ArrayList<>(second.findByConversationId("conversation-1"));
+
+        // Act - each adds a turn to its own, now stale, view
+        firstView.addAll(List.of(new UserMessage("question from first"), new AssistantMessage("answer from first")));
+        first.saveAll("conversation-1", firstView);
+        // turns are ordered by when they were saved
+        Thread.sleep(2);
+        secondView.addAll(List.of(new UserMessage("question from second"), new AssistantMessage("answer from second")));
+        second.saveAll("conversation-1", secondView);
+        second.flush();
+        first.flush();
+
+        // Assert
+        List<String> texts = repository(500).findByConversationId("conversation-1").stream().map(Message::getText).toList();
+        assertEquals(List.of("hello", "hi", "question from first", "answer from first", "question from second", "answer from second"), texts);
+    }
+
+    @Test
+    void testConversationIsTrimmedToItsWindow() {
+        // Arrange
+        SharedChatMemoryRepository repository = repository(500);
+        repository.saveAll("conversation-1", List.of(new UserMessage("first"), new AssistantMessage("second")));
+        repository.flush();
+
+        // Act - the memory window dropped the oldest message when the new one was added
+        List<Message> window = new ArrayList<>(repository.findByConversationId("conversation-1").subList(1, 2));
+        window.add(new UserMessage("third"));
+        repository.saveAll("conversation-1", window);
+        repository.flush();
+
+        // Assert
+        assertEquals(2, rows());
+        assertEquals(List.of("second", "third"),
+                repository(500).findByConversationId("conversation-1").stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void testBatchSizeTriggersFlush() throws Exception {
+        // Arrange
+        SharedChatMemoryRepository repository = repository(3);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            repository.saveAll("conversation-" + i, List.of(new UserMessage("hello " + i)));
+        }
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (rows() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, rows());
+    }
+
+    @Test
+    void testDeleteRemovesConversation() {
+        // Arrange
+        SharedChatMemoryRepository repository = repository(500);
+        repository.saveAll("conversation-1", List.of(new UserMessage("hello")));
+        repository.flush();
+
+        // Act
+        repository.deleteByConversationId("conversation-1");
+        repository.flush();
+
+        // Assert
+        assertTrue(repository.findByConversationId("conversation-1").isEmpty());
+        assertTrue(repository(500).findByConversationId("conversation-1").isEmpty());
+        assertEquals(0, rows());
+    }
+
+    @Test
+    void testFlushedTurnsAreVisibleToAnotherInstance() {
+        // Arrange
+        SharedChatMemoryRepository first = repository(500);
+        SharedChatMemoryRepository second = repository(500);
+
+        // Act - the conversation moves to the other instance on every turn, as it can behind a load balancer
+        for (int turn = 0; turn < 4; turn++) {
+            SharedChatMemoryRepository instance = turn % 2 == 0 ? first : second;
+            instance.saveAll("conversation-1", append(instance, "conversation-1",
+                    new UserMessage("question " + turn), new AssistantMessage("answer " + turn)));
+            instance.flush();
+        }
+
+        // Assert
+        List<String> texts = repository(500).findByConversationId("conversation-1").stream().map(Message::getText).toList();
+        assertEquals(List.of("question 0", "answer 0", "question 1", "answer 1", "question 2", "answer 2", "question 3", "answer 3"), texts);
+    }
+
+    @Test
+    void testTableUsesTheDatabaseTextType() {
+        // Act & Assert
+        assertTrue(SharedChatMemoryRepository.createTable("PostgreSQL").contains("content TEXT NOT NULL"));
+        assertTrue(SharedChatMemoryRepository.createTable("MySQL").contains("content LONGTEXT NOT NULL"));
+        assertTrue(SharedChatMemoryRepository.createTable("Microsoft SQL Server").contains("content NVARCHAR(MAX) NOT NULL"));
+        assertTrue(SharedChatMemoryRepository.createTable("Oracle").contains("seq NUMBER(19) NOT NULL"));
+        assertTrue(SharedChatMemoryRepository.createTable("H2").contains("content CLOB NOT NULL"));
+    }
+
+    @Test
+    void testExistingTableIsKept() {
+        // Arrange
+        SharedChatMemoryRepository first = repository(500);
+        first.saveAll("conversation-1", List.of(new UserMessage("hello")));
+        first.flush();
+
+        // Act - a second instance starting up finds the table already there
+        SharedChatMemoryRepository restarted = repository(500);
+
+        // Assert
+        assertEquals(1, restarted.findByConversationId("conversation-1").size());
+    }
+
+    /**
+     * Opt-in with {@code -Dbenchmark=true}: times a read and a write per turn, as MessageChatMemoryAdvisor does,
+     * against the in-memory default. Writes are only queued on the request path, so a turn stays within a small
+     * multiple of the in-memory store.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void testThroughputAgainstInMemoryDefault() {
+        // Arrange
+        int conversations = 200;
+        int turns = 20;
+        SharedChatMemoryRepository shared = repository(500);
+        InMemoryChatMemoryRepository inMemory = new InMemoryChatMemoryRepository();
+
+        // Act - warm up both, then time every turn
+        runTurns(inMemory, conversations, 5);
+        runTurns(shared, conversations, 5);
+        long[] inMemoryNanos = runTurns(inMemory, conversations, turns);
+        long[] sharedNanos = runTurns(shared, conversations, turns);
+        long flushStart = System.nanoTime();
+        shared.flush();
+        long flushNanos = System.nanoTime() - flushStart;
+
+        // Assert
+        long inMemoryMedian = median(inMemoryNanos);
+        long sharedMedian = median(sharedNanos);
+        System.out.printf("Chat memory turns/s: in-memory %,d, shared %,d; p50 per turn: in-memory %,d ns, shared %,d ns; final flush %d ms%n",
+                throughput(inMemoryNanos), throughput(sharedNanos), inMemoryMedian, sharedMedian, flushNanos / 1_000_000);
+        // a turn on the in-memory store can take well under a microsecond, which would make any ratio noise
+        assertTrue(sharedMedian <= 20 * Math.max(inMemoryMedian, 1_000),
+                "shared p50 " + sharedMedian + " ns should be within 20x of in-memory p50 " + inMemoryMedian + " ns");
+        assertEquals(2 * (turns + 5), repository(500).findByConversationId("conversation-0").size());
+    }
+
+    private static long[] runTurns(ChatMemoryRepository repository, int conversations, int turns) {
+        long[] nanos = new long[conversations * turns];
+        for (int turn = 0; turn < turns; turn++) {
+            for (int c = 0; c < conversations; c++) {
+                long start = System.nanoTime();
+                String conversationId = "conversation-" + c;
+                repository.saveAll(conversationId, append(repository, conversationId,
+                        new UserMessage("question " + turn), new AssistantMessage("answer " + turn)));
+                nanos[turn * conversations + c] = System.nanoTime() - start;
+            }
+        }
+        return nanos;
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long throughput(long[] nanos) {
+        return nanos.length * 1_000_000_000L / Math.max(1, Arrays.stream(nanos).sum());
+    }
+
+    private static List<Message> append(ChatMemoryRepository repository, String conversationId, Message... messages) {
+        List<Message> window = new ArrayList<>(repository.findByConversationId(conversationId));
+        window.addAll(List.of(messages));
+        return window;
+    }
+
+    private SharedChatMemoryRepository repository(int batchSize) {
+        SharedChatMemoryRepository repository = new SharedChatMemoryRepository(jdbcTemplate, new DataSourceTransactionManager(database),
+                new ChatMemoryProperties("jdbc", Duration.ofHours(1), batchSize, 1000, Duration.ofMinutes(5), true));
+        repositories.add(repository);
+        return repository;
+    }
+
+    private int rows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_memory", Integer.class);
+    }
+}
@@ -0,0 +1,36 @@
+package net.starkenberg.ai.springaiagent.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitePropertiesTest {
+
+    private static final SiteProperties.Site AMPLIFY =
+            new SiteProperties.Site("amplify", "Amplify Federal", "https://amplifyfederal.com", List.of("amplifyfederal.com"), null);
+    private static final SiteProperties.Site DOCS =
+            new SiteProperties.Site("docs", "Docs", "https://docs.example.com", List.of(), null);
+
+    @Test
+    void testLegacyBaseUrlReplacesDefaultSiteBaseUrl() {
+        // Act
+        SiteProperties properties = new SiteProperties(List.of(AMPLIFY, DOCS), new SiteProperties.LegacySite("https://staging.amplifyfederal.com"));
+
+        // Assert
+        assertEquals("https://staging.amplifyfederal.com", properties.defaultSite().baseUrl());
+        assertEquals("amplify", properties.defaultSite().id());
+        assertEquals(List.of("amplifyfederal.com"), properties.defaultSite().hosts());
+        assertEquals(DOCS, properties.sites().get(1));
+    }
+
+    @Test
+    void testSitesCrawlingTheSameHostAreRejected() {
+        // Arrange
+        SiteProperties.Site blog = new SiteProperties.Site("blog", "Blog", "https://AmplifyFederal.com/blog", List.of(), null);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new SiteProperties(List.of(AMPLIFY, blog)));
+    }
+}
@@ -1,8 +1,13 @@
 package net.starkenberg.ai.springaiagent.controllers;
 
 import net.starkenberg.ai.springaiagent.chat.Answer;
+import net.starkenberg.ai.springaiagent.chat.BatchAnswer;
 import net.starkenberg.ai.springaiagent.chat.CustomerSupportAssistant;
 import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.chat.SearchResult;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import net.starkenberg.ai.springaiagent.services.BatchQuestionService;
+import net.starkenberg.ai.springaiagent.services.SearchService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -12,16 +17,38 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "app.sites[0].id=amplify",
+        "app.sites[0].name=Amplify Federal",
+        "app.sites[0].baseUrl=https://amplifyfederal.com",
+        "app.sites[1].id=docs",
+        "app.sites[1].name=Example Docs",
+        "app.sites[1].baseUrl=https://docs.example.com",
+        "app.sites[1].hosts[0]=docs.example.com",
+        "app.batch.maxQuestions=2"
+})
 @AutoConfigureMockMvc
 @SuppressWarnings("deprecation")
 class ChatControllerTest {
@@ -32,11 +59,21 @@ class ChatControllerTest {
     @MockBean
     private CustomerSupportAssistant assistant;
 
+    @MockBean
+    private BatchQuestionService batchQuestionService;
+
+    @MockBean
+    private SearchService searchService;
+
     @BeforeEach
     void setUp() {
         // Setup common mocks
-        when(assistant.chat(anyString(), anyString())).thenAnswer(invocation -> {
-            String question = invocation.getArgument(1);
+        when(assistant.chat(any(SiteProperties.Site.class), anyString(), anyString())).thenAnswer(invocation -> {
+            SiteProperties.Site site = invocation.getArgument(0);
+            String question = invocation.getArgument(2);
+            if (!site.id().equals("amplify")) {
+                return "Answer from " + site.name();
+            }
             if (question.equals("What are Amplify Federal's core values?")) {
                 return "Amplify Federal's core values are integrity, innovation, and excellence.";
             } else if (question.equals("What services does Amplify Federal offer?")) {
@@ -72,4 +109,140 @@ class ChatControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.answer").value("Amplify Federal offers various technology and consulting services."));
     }
+
+    @Test
+    void testConversationIdHeaderIsUsedAndEchoed() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/ai")
+                .header("X-Conversation-Id", "conversation-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"question\":\"What services does Amplify Federal offer?\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Conversation-Id", "conversation-42"));
+        verify(assistant).chat(any(SiteProperties.Site.class), eq("conversation-42"), anyString());
+    }
+
+    @Test
+    void testNewConversationIdIsIssuedWhenMissing() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/ai"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Assert
+        String conversationId = result.getResponse().getHeader("X-Conversation-Id");
+        assertNotNull(conversationId);
+        verify(assistant).chat(any(SiteProperties.Site.class), eq(conversationId), anyString());
+    }
+
+    @Test
+    void testInvalidConversationIdIsRejected() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/ai").header("X-Conversation-Id", "not a valid id!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetSearch() throws Exception {
+        // Arrange
+        when(searchService.search("core values", 3, "amplify"))
+                .thenReturn(List.of(new SearchResult("Our core values are integrity.", "https://amplifyfederal.com/about", 0.9)));
+
+        // Act & Assert
+        mockMvc.perform(get("/ai/search")
+                .param("query", "core values")
+                .param("topK", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value("Our core values are integrity."))
+                .andExpect(jsonPath("$[0].url").value("https://amplifyfederal.com/about"))
+                .andExpect(jsonPath("$[0].score").value(0.9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPostBatchStreamsNdjson() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            Consumer<BatchAnswer> sink = invocation.getArgument(2);
+            sink.accept(new BatchAnswer(1, "second", "answer two", null, 5, 10, 100, 110));
+            sink.accept(new BatchAnswer(0, "first", "answer one", null, 5, 12, 150, 162));
+            return null;
+        }).when(batchQuestionService).answerAll(any(SiteProperties.Site.class), any(List.class), any(Consumer.class));
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/ai/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"first\"},{\"question\":\"second\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"index\":1,\"question\":\"second\",\"answer\":\"answer two\",\"error\":null,\"embeddingMillis\":5,\"retrievalMillis\":10,\"generationMillis\":100,\"totalMillis\":110}\n"
+                        + "{\"index\":0,\"question\":\"first\",\"answer\":\"answer one\",\"error\":null,\"embeddingMillis\":5,\"retrievalMillis\":12,\"generationMillis\":150,\"totalMillis\":162}\n"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPostBatchRejectsBlankQuestions() throws Exception {
+        // Act & Assert - rejected before the stream starts, so the client sees the error status
+        mockMvc.perform(post("/ai/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"first\"},{\"question\":\" \"}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/ai/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"first\"},null]"))
+                .andExpect(status().isBadRequest());
+        verify(batchQuestionService, never()).answerAll(any(SiteProperties.Site.class), any(List.class), any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPostBatchRejectsTooManyQuestions() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/ai/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"one\"},{\"question\":\"two\"},{\"question\":\"three\"}]"))
+                .andExpect(status().isBadRequest());
+        verify(batchQuestionService, never()).answerAll(any(SiteProperties.Site.class), any(List.class), any(Consumer.class));
+    }
+
+    @Test
+    void testSitePathRoutesToThatSite() throws Exception {
+        // Arrange
+        when(searchService.search("install", 3, "docs"))
+                .thenReturn(List.of(new SearchResult("Run the installer.", "https://docs.example.com/install", 0.8)));
+
+        // Act & Assert
+        mockMvc.perform(get("/sites/docs/ai"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Answer from Example Docs"));
+        mockMvc.perform(get("/sites/docs/ai/search")
+                .param("query", "install")
+                .param("topK", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].url").value("https://docs.example.com/install"));
+    }
+
+    @Test
+    void testHostHeaderRoutesToMatchingSite() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/ai").header("Host", "docs.example.com"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Answer from Example Docs"));
+        mockMvc.perform(get("/ai").header("Host", "unknown.example.com"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Amplify Federal's core values are integrity, innovation, and excellence."));
+    }
+
+    @Test
+    void testUnknownSitePathIsNotFound() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/sites/missing/ai"))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,53 @@
+package net.starkenberg.ai.springaiagent.jfr;
+
+import jdk.jfr.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineContextTest {
+
+    @Test
+    void testNestedScopesRestorePreviousKey() {
+        // Arrange
+        assertNull(PipelineContext.key());
+
+        // Act & Assert
+        try (PipelineContext.Scope page = PipelineContext.open("https://example.com/page")) {
+            assertEquals("https://example.com/page", PipelineContext.key());
+            try (PipelineContext.Scope chat = PipelineContext.open("chat-1")) {
+                assertEquals("chat-1", PipelineContext.key());
+            }
+            assertEquals("https://example.com/page", PipelineContext.key());
+        }
+        assertNull(PipelineContext.key());
+    }
+
+    @Test
+    void testKeyIsNotSharedAcrossThreads() throws InterruptedException {
+        // Arrange
+        String[] seen = new String[1];
+
+        // Act
+        try (PipelineContext.Scope scope = PipelineContext.open("chat-1")) {
+            Thread thread = Thread.ofVirtual().start(() -> seen[0] = PipelineContext.key());
+            thread.join();
+        }
+
+        // Assert
+        assertNull(seen[0]);
+    }
+
+    @Test
+    void testShippedProfileEnablesPipelineEvents() throws Exception {
+        // Act
+        Configuration configuration = Configuration.create(Path.of("src/main/jfr/spring-ai-agent.jfc"));
+
+        // Assert
+        assertEquals("true", configuration.getSettings().get("net.starkenberg.ai.LlmCall#enabled"));
+        assertEquals("0 ms", configuration.getSettings().get("net.starkenberg.ai.PageFetch#threshold"));
+        assertEquals("20 ms", configuration.getSettings().get("jdk.ExecutionSample#period"));
+    }
+}
@@ -0,0 +1,187 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.chat.BatchAnswer;
+import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.config.BatchProperties;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchQuestionServiceTest {
+    private static final SiteProperties.Site SITE =
+            new SiteProperties.Site("amplify", "Amplify Federal", "https://amplifyfederal.com", List.of(), null);
+
+    @Mock
+    private OpenAIService openAIService;
+
+    @Mock
+    private CachingEmbeddingModel embeddingModel;
+
+    private BatchQuestionService batchQuestionService;
+
+    @BeforeEach
+    void setUp() {
+        batchQuestionService = new BatchQuestionService(openAIService, embeddingModel, new BatchProperties(3, 2, 100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchQuestionService.shutdown();
+    }
+
+    @Test
+    void testAnswerAllEmbedsOnceAndReturnsEveryAnswer() throws Exception {
+        // Arrange
+        List<Question> questions = List.of(new Question("one"), new Question("two"), new Question("three"));
+        List<Document> documents = List.of(new Document("context"));
+        when(openAIService.retrieve(eq(SITE), anyString())).thenReturn(documents);
+        when(openAIService.generate(eq(SITE), anyString(), eq(documents))).thenAnswer(invocation -> "answer " + invocation.getArgument(1));
+
+        // Act
+        List<BatchAnswer> answers = new ArrayList<>();
+        batchQuestionService.answerAll(SITE, questions, answers::add);
+
+        // Assert
+        assertEquals(3, answers.size());
+        answers.forEach(answer -> {
+            assertNull(answer.error());
+            assertEquals("answer " + answer.question(), answer.answer());
+            assertEquals(questions.get(answer.index()).question(), answer.question());
+        });
+        verify(embeddingModel, times(1)).prime(List.of("one", "two", "three"));
+        verify(openAIService, times(3)).retrieve(anyString());
+    }
+
+    @Test
+    void testGenerationConcurrencyIsBounded() throws Exception {
+        // Arrange
+        List<Question> questions = List.of(new Question("a"), new Question("b"), new Question("c"),
+                new Question("d"), new Question("e"), new Question("f"));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(openAIService.retrieve(eq(SITE), anyString())).thenReturn(List.of());
+        when(openAIService.generate(eq(SITE), anyString(), anyList())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return "ok";
+        });
+
+        // Act
+        List<BatchAnswer> answers = new ArrayList<>();
+        batchQuestionService.answerAll(SITE, questions, answers::add);
+
+        // Assert
+        assertEquals(6, answers.size());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    void testFailedQuestionIsReportedWithoutFailingTheBatch() throws Exception {
+        // Arrange
+        when(openAIService.retrieve(eq(SITE), anyString())).thenReturn(List.of());
+        when(openAIService.generate(eq(SITE), eq("good"), anyList())).thenReturn("ok");
+        when(openAIService.generate(eq(SITE), eq("bad"), anyList())).thenThrow(new IllegalStateException("model unavailable"));
+
+        // Act
+        List<BatchAnswer> answers = new ArrayList<>();
+        batchQuestionService.answerAll(SITE, List.of(new Question("good"), new Question("bad")), answers::add);
+
+        // Assert
+        assertEquals(2, answers.size());
+        BatchAnswer failed = answers.stream().filter(a -> a.index() == 1).findFirst().orElseThrow();
+        assertEquals("model unavailable", failed.error());
+        assertNull(failed.answer());
+    }
+
+    @Test
+    void testRetrievalConcurrencyIsBounded() throws Exception {
+        // Arrange
+        List<Question> questions = List.of(new Question("a"), new Question("b"), new Question("c"),
+                new Question("d"), new Question("e"), new Question("f"));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(openAIService.retrieve(eq(SITE), anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return List.of();
+        });
+        when(openAIService.generate(eq(SITE), anyString(), anyList())).thenReturn("ok");
+
+        // Act
+        List<BatchAnswer> answers = new ArrayList<>();
+        batchQuestionService.answerAll(SITE, questions, answers::add);
+
+        // Assert
+        assertEquals(6, answers.size());
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    void testFailingSinkCancelsRemainingQuestions() throws Exception {
+        // Arrange - one question fails at once, every generation would run until interrupted
+        batchQuestionService.shutdown();
+        batchQuestionService = new BatchQuestionService(openAIService, embeddingModel, new BatchProperties(10, 2, 100));
+        List<Question> questions = List.of(new Question("fail"), new Question("b"), new Question("c"),
+                new Question("d"), new Question("e"), new Question("f"));
+        AtomicInteger inFlight = new AtomicInteger();
+        when(openAIService.retrieve(eq(SITE), anyString())).thenAnswer(invocation -> {
+            if ("fail".equals(invocation.getArgument(1))) throw new IllegalStateException("retrieval failed");
+            return List.of();
+        });
+        lenient().when(openAIService.generate(eq(SITE), anyString(), anyList())).thenAnswer(invocation -> {
+            inFlight.incrementAndGet();
+            try {
+                Thread.sleep(30_000);
+                return "ok";
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        // Act - the client has gone away by the time the first answer is written
+        assertThrows(UncheckedIOException.class, () -> batchQuestionService.answerAll(SITE, questions, answer -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+
+        // Assert - generations still running are interrupted rather than left to finish for nobody
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (inFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, inFlight.get());
+    }
+
+    @Test
+    void testPrimedEmbeddingsAreReleasedAfterTheBatch() throws Exception {
+        // Arrange
+        CachingEmbeddingModel.Primed primed = mock(CachingEmbeddingModel.Primed.class);
+        when(embeddingModel.prime(anyList())).thenReturn(primed);
+        when(openAIService.retrieve(eq(SITE), anyString())).thenReturn(List.of());
+        when(openAIService.generate(eq(SITE), anyString(), anyList())).thenReturn("ok");
+
+        // Act
+        batchQuestionService.answerAll(SITE, List.of(new Question("a")), answer -> {});
+
+        // Assert
+        verify(primed).close();
+    }
+}
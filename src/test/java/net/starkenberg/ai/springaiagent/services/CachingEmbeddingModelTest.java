@@ -0,0 +1,191 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    private CachingEmbeddingModel embeddingModel;
+
+    @BeforeEach
+    void setUp() {
+        embeddingModel = new CachingEmbeddingModel(delegate, 2, 2048);
+    }
+
+    @Test
+    void testPrimeEmbedsAllQueriesInOneCall() {
+        // Arrange
+        float[] first = {1f};
+        float[] second = {2f};
+        when(delegate.embed(List.of("first", "second"))).thenReturn(List.of(first, second));
+
+        // Act
+        embeddingModel.prime(List.of("first", "second", "first"));
+
+        // Assert
+        assertSame(first, embeddingModel.embed("first"));
+        assertSame(second, embeddingModel.embed("second"));
+        verify(delegate, times(1)).embed(anyList());
+        verify(delegate, never()).embed(anyString());
+    }
+
+    @Test
+    void testPrimeSplitsQueriesOverTheInputLimit() {
+        // Arrange
+        CachingEmbeddingModel limited = new CachingEmbeddingModel(delegate, 2, 2);
+        when(delegate.embed(List.of("a", "b"))).thenReturn(List.of(new float[]{1f}, new float[]{2f}));
+        when(delegate.embed(List.of("c"))).thenReturn(List.of(new float[]{3f}));
+
+        // Act
+        limited.prime(List.of("a", "b", "c"));
+
+        // Assert
+        assertEquals(3f, limited.embed("c")[0]);
+        verify(delegate, times(2)).embed(anyList());
+        verify(delegate, never()).embed(anyString());
+    }
+
+    @Test
+    void testEmbedCachesSingleQueries() {
+        // Arrange
+        float[] embedding = {1f};
+        when(delegate.embed("query")).thenReturn(embedding);
+
+        // Act
+        embeddingModel.embed("query");
+        float[] result = embeddingModel.embed("query");
+
+        // Assert
+        assertSame(embedding, result);
+        verify(delegate, times(1)).embed("query");
+    }
+
+    @Test
+    void testLeastRecentlyUsedQueryIsEvicted() {
+        // Arrange
+        when(delegate.embed(anyString())).thenReturn(new float[]{1f});
+
+        // Act
+        embeddingModel.embed("a");
+        embeddingModel.embed("b");
+        embeddingModel.embed("c");
+        embeddingModel.embed("a");
+
+        // Assert
+        verify(delegate, times(2)).embed("a");
+        verify(delegate, times(1)).embed("b");
+        verify(delegate, times(1)).embed("c");
+    }
+
+    @Test
+    void testPreloadedDocumentEmbeddingsAreUsedOnce() {
+        // Arrange
+        Document first = new Document("first chunk");
+        Document second = new Document("second chunk");
+        float[] firstEmbedding = {1f};
+        float[] secondEmbedding = {2f};
+        EmbeddingOptions options = mock(EmbeddingOptions.class);
+        BatchingStrategy batchingStrategy = mock(BatchingStrategy.class);
+        embeddingModel.preload(List.of(first, second), List.of(firstEmbedding, secondEmbedding));
+
+        // Act
+        List<float[]> result = embeddingModel.embed(List.of(first, second), options, batchingStrategy);
+        embeddingModel.embed(List.of(first, second), options, batchingStrategy);
+
+        // Assert
+        assertSame(firstEmbedding, result.get(0));
+        assertSame(secondEmbedding, result.get(1));
+        verify(delegate, times(1)).embed(anyList(), any(EmbeddingOptions.class), any(BatchingStrategy.class));
+    }
+
+    @Test
+    void testPrimedQueriesLargerThanCacheAreNotEvicted() {
+        // Arrange
+        List<String> queries = List.of("a", "b", "c", "d");
+        when(delegate.embed(queries)).thenReturn(List.of(new float[]{1f}, new float[]{2f}, new float[]{3f}, new float[]{4f}));
+
+        // Act
+        try (CachingEmbeddingModel.Primed primed = embeddingModel.prime(queries)) {
+            queries.forEach(embeddingModel::embed);
+            queries.forEach(embeddingModel::embed);
+        }
+
+        // Assert - the cache holds two entries, but every primed query was served without another call
+        verify(delegate, times(1)).embed(anyList());
+        verify(delegate, never()).embed(anyString());
+    }
+
+    @Test
+    void testPrimedQueriesAreReleasedWhenClosed() {
+        // Arrange
+        when(delegate.embed(List.of("a", "b", "c"))).thenReturn(List.of(new float[]{1f}, new float[]{2f}, new float[]{3f}));
+        when(delegate.embed(anyString())).thenReturn(new float[]{9f});
+
+        // Act
+        embeddingModel.prime(List.of("a", "b", "c")).close();
+        embeddingModel.embed("a");
+
+        // Assert
+        verify(delegate, times(1)).embed("a");
+    }
+
+    @Test
+    void testRecordingCapturesDocumentEmbeddings() {
+        // Arrange
+        Document first = new Document("first chunk");
+        Document second = new Document("second chunk");
+        float[] firstEmbedding = {1f};
+        float[] secondEmbedding = {2f};
+        EmbeddingOptions options = mock(EmbeddingOptions.class);
+        BatchingStrategy batchingStrategy = mock(BatchingStrategy.class);
+        when(delegate.embed(anyList(), any(EmbeddingOptions.class), any(BatchingStrategy.class)))
+                .thenReturn(List.of(firstEmbedding, secondEmbedding));
+
+        // Act
+        CachingEmbeddingModel.Recording recording = embeddingModel.record();
+        embeddingModel.embed(List.of(first, second), options, batchingStrategy);
+        recording.close();
+
+        // Assert
+        assertSame(firstEmbedding, recording.embedding(first.getId()));
+        assertSame(secondEmbedding, recording.embedding(second.getId()));
+    }
+
+    @Test
+    void testReleaseDropsPreloadedEmbeddings() {
+        // Arrange
+        Document document = new Document("chunk");
+        EmbeddingOptions options = mock(EmbeddingOptions.class);
+        BatchingStrategy batchingStrategy = mock(BatchingStrategy.class);
+        when(delegate.embed(anyList(), any(EmbeddingOptions.class), any(BatchingStrategy.class)))
+                .thenReturn(List.<float[]>of(new float[]{2f}));
+        embeddingModel.preload(List.of(document), List.<float[]>of(new float[]{1f}));
+
+        // Act
+        embeddingModel.release(List.of(document));
+        List<float[]> result = embeddingModel.embed(List.of(document), options, batchingStrategy);
+
+        // Assert
+        assertEquals(2f, result.getFirst()[0]);
+        verify(delegate, times(1)).embed(anyList(), any(EmbeddingOptions.class), any(BatchingStrategy.class));
+    }
+}
@@ -0,0 +1,122 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.config.IngestProperties;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlContentExtractorTest {
+
+    private static final String URL = "https://example.com/about";
+    private static final String PAGE = """
+            <html>
+            <head><title>About | Amplify Federal</title><script>var tracking = "menu analytics";</script></head>
+            <body>
+              <header><nav><ul><li><a href="/">Home</a></li><li><a href="/careers">Careers</a></li><li><a href="/contact">Contact</a></li></ul></nav></header>
+              <main>
+                <h1>About Us</h1>
+                <p>Amplify Federal delivers modern digital services.</p>
+                <h2>Core Values</h2>
+                <ul><li>Integrity</li><li>Innovation</li></ul>
+                <h3>Integrity</h3>
+                <p>We do the <b>right</b> thing.</p>
+                <h2>Leadership</h2>
+                <p>Our leadership team has decades of experience.</p>
+                <form><label>Subscribe to our newsletter</label><input name="email"></form>
+              </main>
+              <aside>Related posts: five ways to modernise legacy systems</aside>
+              <footer>Copyright Amplify Federal. Privacy policy. Terms of use. Accessibility statement.</footer>
+              <noscript>Please enable JavaScript to use this site.</noscript>
+            </body>
+            </html>
+            """;
+
+    private HtmlContentExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new HtmlContentExtractor(new IngestProperties(true, DataSize.ofMegabytes(50), Duration.ofSeconds(60), 20_000, true));
+    }
+
+    @Test
+    void testBoilerplateIsRemoved() {
+        // Act
+        HtmlContentExtractor.Extraction extraction = extractor.extract(URL, Jsoup.parse(PAGE, URL));
+
+        // Assert
+        String content = String.join("\n", extraction.sections().stream().map(Document::getText).toList());
+        assertTrue(content.contains("Amplify Federal delivers modern digital services."));
+        assertFalse(content.contains("Careers"));
+        assertFalse(content.contains("Copyright"));
+        assertFalse(content.contains("Subscribe"));
+        assertFalse(content.contains("Related posts"));
+        assertFalse(content.contains("JavaScript"));
+        assertFalse(content.contains("tracking"));
+    }
+
+    @Test
+    void testArticleHeaderIsKept() {
+        // Arrange
+        String page = """
+                <html><body>
+                  <header class="site"><a href="/">Amplify Federal</a> Careers Contact</header>
+                  <article>
+                    <header><h1>Modernising Legacy Systems</h1><p>Published by the delivery team</p></header>
+                    <p>Start with the services users depend on most.</p>
+                  </article>
+                </body></html>
+                """;
+
+        // Act
+        HtmlContentExtractor.Extraction extraction = extractor.extract(URL, Jsoup.parse(page, URL));
+
+        // Assert
+        String content = String.join("\n", extraction.sections().stream().map(Document::getText).toList());
+        assertEquals("Modernising Legacy Systems", extraction.sections().getFirst().getMetadata().get("heading"));
+        assertTrue(content.contains("Published by the delivery team"));
+        assertFalse(content.contains("Careers"));
+    }
+
+    @Test
+    void testSectionsFollowHeadings() {
+        // Act
+        List<Document> sections = extractor.extract(URL, Jsoup.parse(PAGE, URL)).sections();
+
+        // Assert
+        assertEquals(4, sections.size());
+        assertEquals("About Us", sections.get(0).getMetadata().get("heading"));
+        assertEquals("About Us > Core Values", sections.get(1).getMetadata().get("headingPath"));
+        assertEquals("About Us > Core Values > Integrity", sections.get(2).getMetadata().get("headingPath"));
+        assertEquals(3, sections.get(2).getMetadata().get("headingLevel"));
+        assertEquals("About Us > Leadership", sections.get(3).getMetadata().get("headingPath"));
+        assertEquals("Integrity\nWe do the right thing.", sections.get(2).getText());
+        assertEquals(URL, sections.get(0).getMetadata().get("url"));
+        assertEquals("About | Amplify Federal", sections.get(0).getMetadata().get("title"));
+    }
+
+    @Test
+    void testTokenCountsAreReported() {
+        // Act
+        HtmlContentExtractor.Extraction extraction = extractor.extract(URL, Jsoup.parse(PAGE, URL));
+
+        // Assert
+        assertTrue(extraction.tokensAfter() > 0);
+        assertTrue(extraction.tokensBefore() > extraction.tokensAfter());
+    }
+
+    @Test
+    void testPageWithoutTextHasNoSections() {
+        // Act
+        HtmlContentExtractor.Extraction extraction = extractor.extract(URL, Jsoup.parse("<html><body><nav>Home</nav><script>app()</script></body></html>", URL));
+
+        // Assert
+        assertTrue(extraction.sections().isEmpty());
+    }
+}
@@ -0,0 +1,185 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.starkenberg.ai.springaiagent.config.SnapshotProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndexSnapshotServiceTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private CachingEmbeddingModel embeddingModel;
+
+    @Mock
+    private PineconeIndexReader indexReader;
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testExportThenImportReusesEmbeddings() throws Exception {
+        // Arrange
+        Path snapshot = tempDir.resolve("index.snap");
+        List<Document> documents = List.of(
+                Document.builder().id("a").text("Core values").metadata(Map.of("url", "https://example.com/about", "site", "example")).build(),
+                Document.builder().id("b").text("Services").metadata(Map.of("url", "https://example.com/services", "site", "example")).build(),
+                Document.builder().id("c").text("Careers").metadata(Map.of("url", "https://example.com/careers", "site", "example")).build(),
+                Document.builder().id("d").text("Install").metadata(Map.of("url", "https://docs.example.com/install", "site", "docs")).build());
+        Map<String, float[]> stored = Map.of("a", new float[]{1f, 0f}, "b", new float[]{0f, 1f}, "c", new float[]{1f, 1f}, "d", new float[]{0f, 0f});
+        CachingEmbeddingModel.Recording recording = mock(CachingEmbeddingModel.Recording.class);
+        when(recording.embedding(anyString())).thenAnswer(invocation -> stored.get(invocation.<String>getArgument(0)));
+        when(embeddingModel.record()).thenReturn(recording);
+
+        // Act - export while indexing
+        IndexSnapshotService exporter = new IndexSnapshotService(
+                new SnapshotProperties(null, snapshot, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.CRAWL),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+        try (IndexSnapshotService.Export export = exporter.startExport()) {
+            export.capture(documents, () -> vectorStore.add(documents));
+            export.commit();
+        }
+
+        // Act - import into a store where only the example site is empty
+        List<Document> added = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> added.addAll(invocation.getArgument(0))).when(vectorStore).add(anyList());
+        IndexSnapshotService importer = new IndexSnapshotService(
+                new SnapshotProperties(snapshot, null, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.CRAWL),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+        Map<String, Long> counts = importer.importSnapshot(Set.of("example"));
+
+        // Assert - the docs site already has data, so its chunk is skipped
+        assertTrue(importer.canImport());
+        assertEquals(Map.of("example", 3L), counts);
+        assertEquals(3, added.size());
+        assertEquals(List.of("a", "b", "c"), added.stream().map(Document::getId).sorted().toList());
+        // once when exporting and once per imported batch
+        verify(vectorStore, times(3)).add(anyList());
+        verify(recording).close();
+        verify(embeddingModel, never()).embed(anyList());
+        verify(embeddingModel, times(2)).preload(anyList(), anyList());
+        verify(embeddingModel, times(2)).release(anyList());
+    }
+
+    @Test
+    void testUncommittedExportLeavesNoSnapshot() throws Exception {
+        // Arrange
+        Path snapshot = tempDir.resolve("index.snap");
+        CachingEmbeddingModel.Recording recording = mock(CachingEmbeddingModel.Recording.class);
+        when(recording.embedding("a")).thenReturn(new float[]{1f, 0f});
+        when(embeddingModel.record()).thenReturn(recording);
+        IndexSnapshotService exporter = new IndexSnapshotService(
+                new SnapshotProperties(null, snapshot, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.CRAWL),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+
+        // Act - indexing fails part way, so the export is closed without being committed
+        try (IndexSnapshotService.Export export = exporter.startExport()) {
+            List<Document> documents = List.of(Document.builder().id("a").text("Core values").build());
+            export.capture(documents, () -> vectorStore.add(documents));
+        }
+
+        // Assert
+        assertFalse(Files.exists(snapshot));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+        IndexSnapshotService importer = new IndexSnapshotService(
+                new SnapshotProperties(snapshot, null, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.CRAWL),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+        assertFalse(importer.canImport());
+    }
+
+    @Test
+    void testExportIndexWritesEveryStoredChunk() throws Exception {
+        // Arrange - the index is read a page at a time
+        Path snapshot = tempDir.resolve("index.snap");
+        doAnswer(invocation -> {
+            PineconeIndexReader.Batch batch = invocation.getArgument(0);
+            batch.accept(List.of(
+                    new IndexSnapshot.Entry("a", "Core values", Map.of("url", "https://example.com/about", "site", "example"), new float[]{1f, 0f}),
+                    new IndexSnapshot.Entry("b", "Services", Map.of("url", "https://example.com/services", "site", "example"), new float[]{0f, 1f})));
+            batch.accept(List.of(
+                    new IndexSnapshot.Entry("c", "Install", Map.of("url", "https://docs.example.com/install", "site", "docs"), new float[]{1f, 1f})));
+            return null;
+        }).when(indexReader).forEachBatch(any());
+        IndexSnapshotService exporter = new IndexSnapshotService(
+                new SnapshotProperties(null, snapshot, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.INDEX),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+
+        // Act
+        long exported = exporter.exportIndex();
+
+        // Assert - nothing is captured while crawling, and the snapshot holds the stored vectors
+        assertTrue(exporter.exportsIndex());
+        assertSame(IndexSnapshotService.Export.NONE, exporter.startExport());
+        assertEquals(3, exported);
+        List<IndexSnapshot.Entry> entries = new ArrayList<>();
+        try (IndexSnapshot.Reader reader = new IndexSnapshot.Reader(Files.newInputStream(snapshot), objectMapper)) {
+            for (IndexSnapshot.Entry entry = reader.next(); entry != null; entry = reader.next()) {
+                entries.add(entry);
+            }
+        }
+        assertEquals(List.of("a", "b", "c"), entries.stream().map(IndexSnapshot.Entry::id).toList());
+        assertArrayEquals(new float[]{0f, 1f}, entries.get(1).embedding());
+        assertEquals("docs", entries.get(2).metadata().get("site"));
+        verifyNoInteractions(vectorStore, embeddingModel);
+    }
+
+    @Test
+    void testFailedIndexExportKeepsPreviousSnapshot() throws Exception {
+        // Arrange
+        Path snapshot = tempDir.resolve("index.snap");
+        Files.writeString(snapshot, "previous");
+        doAnswer(invocation -> {
+            PineconeIndexReader.Batch batch = invocation.getArgument(0);
+            batch.accept(List.of(new IndexSnapshot.Entry("a", "Core values", Map.of(), new float[]{1f, 0f})));
+            throw new IllegalStateException("index unavailable");
+        }).when(indexReader).forEachBatch(any());
+        IndexSnapshotService exporter = new IndexSnapshotService(
+                new SnapshotProperties(null, snapshot, IndexSnapshot.Quantization.FLOAT32, 2, 2, SnapshotProperties.ExportMode.INDEX),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, exporter::exportIndex);
+        assertEquals("previous", Files.readString(snapshot));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testExportIsNoOpWhenNotConfigured() throws Exception {
+        // Arrange
+        IndexSnapshotService service = new IndexSnapshotService(
+                new SnapshotProperties(null, null, IndexSnapshot.Quantization.FLOAT32, 500, 4, SnapshotProperties.ExportMode.CRAWL),
+                vectorStore, embeddingModel, objectMapper, indexReader);
+
+        // Act & Assert
+        assertSame(IndexSnapshotService.Export.NONE, service.startExport());
+        assertFalse(service.canImport());
+    }
+}
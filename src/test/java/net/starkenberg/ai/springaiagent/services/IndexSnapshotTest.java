@@ -0,0 +1,109 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSnapshotTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @EnumSource(IndexSnapshot.Quantization.class)
+    void testRoundTrip(IndexSnapshot.Quantization quantization) throws IOException {
+        // Arrange
+        float[] embedding = randomVector(1536, 7);
+        IndexSnapshot.Entry entry = new IndexSnapshot.Entry("id-1", "Amplify Federal core values",
+                Map.of("url", "https://amplifyfederal.com/about"), embedding);
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IndexSnapshot.Writer writer = new IndexSnapshot.Writer(out, quantization, objectMapper)) {
+            writer.write(entry);
+            writer.write(entry);
+        }
+        IndexSnapshot.Entry first;
+        IndexSnapshot.Entry second;
+        IndexSnapshot.Entry end;
+        try (IndexSnapshot.Reader reader = new IndexSnapshot.Reader(new ByteArrayInputStream(out.toByteArray()), objectMapper)) {
+            assertEquals(quantization, reader.quantization());
+            first = reader.next();
+            second = reader.next();
+            end = reader.next();
+        }
+
+        // Assert
+        assertNotNull(second);
+        assertNull(end);
+        assertEquals("id-1", first.id());
+        assertEquals("Amplify Federal core values", first.text());
+        assertEquals(Map.of("url", "https://amplifyfederal.com/about"), first.metadata());
+        float tolerance = switch (quantization) {
+            case FLOAT32 -> 0f;
+            case FLOAT16 -> 1e-3f;
+            case INT8 -> 1f / 127f;
+        };
+        assertEquals(embedding.length, first.embedding().length);
+        for (int i = 0; i < embedding.length; i++) {
+            assertEquals(embedding[i], first.embedding()[i], tolerance);
+        }
+    }
+
+    @Test
+    void testQuantizationShrinksSnapshot() throws IOException {
+        // Arrange
+        List<IndexSnapshot.Entry> entries = IntStream.range(0, 20)
+                .mapToObj(i -> new IndexSnapshot.Entry("id-" + i, "text", Map.of(), randomVector(1536, i)))
+                .toList();
+
+        // Act
+        int float32 = size(entries, IndexSnapshot.Quantization.FLOAT32);
+        int float16 = size(entries, IndexSnapshot.Quantization.FLOAT16);
+        int int8 = size(entries, IndexSnapshot.Quantization.INT8);
+
+        // Assert
+        assertTrue(float16 < float32);
+        assertTrue(int8 < float16);
+    }
+
+    @Test
+    void testRejectsOtherFiles() {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write("not a snapshot".getBytes());
+        } catch (IOException e) {
+            fail(e);
+        }
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> new IndexSnapshot.Reader(new ByteArrayInputStream(out.toByteArray()), objectMapper));
+    }
+
+    private int size(List<IndexSnapshot.Entry> entries, IndexSnapshot.Quantization quantization) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IndexSnapshot.Writer writer = new IndexSnapshot.Writer(out, quantization, objectMapper)) {
+            for (IndexSnapshot.Entry entry : entries) writer.write(entry);
+        }
+        return out.size();
+    }
+
+    private static float[] randomVector(int dimensions, long seed) {
+        Random random = new Random(seed);
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) vector[i] = (float) random.nextGaussian() * 0.05f;
+        return vector;
+    }
+}
@@ -0,0 +1,98 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentedVectorStoreTest {
+
+    @Mock
+    private VectorStore delegate;
+
+    @TempDir
+    Path tempDir;
+
+    private InstrumentedVectorStore vectorStore;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = new InstrumentedVectorStore(delegate);
+    }
+
+    @Test
+    void testAddRecordsUpsertEvent() throws Exception {
+        // Arrange
+        List<Document> documents = List.of(new Document("abc"), new Document("defg"));
+
+        // Act
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("net.starkenberg.ai.Upsert").withThreshold(Duration.ZERO);
+            recording.start();
+            try (PipelineContext.Scope scope = PipelineContext.open("https://example.com/page")) {
+                vectorStore.add(documents);
+            }
+            recording.stop();
+            events = read(recording);
+        }
+
+        // Assert
+        verify(delegate).add(documents);
+        assertEquals(1, events.size());
+        assertEquals("https://example.com/page", events.get(0).getString("key"));
+        assertEquals(2, events.get(0).getInt("chunks"));
+        assertEquals(7, events.get(0).getLong("characters"));
+    }
+
+    @Test
+    void testSimilaritySearchRecordsRetrievalEvent() throws Exception {
+        // Arrange
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("result")));
+
+        // Act
+        List<Document> results;
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("net.starkenberg.ai.Retrieval").withThreshold(Duration.ZERO);
+            recording.start();
+            try (PipelineContext.Scope scope = PipelineContext.open("chat-1")) {
+                results = vectorStore.similaritySearch(SearchRequest.builder().query("pricing").topK(3).build());
+            }
+            recording.stop();
+            events = read(recording);
+        }
+
+        // Assert
+        assertEquals(1, results.size());
+        assertEquals(1, events.size());
+        assertEquals("chat-1", events.get(0).getString("key"));
+        assertEquals(7, events.get(0).getInt("queryLength"));
+        assertEquals(3, events.get(0).getInt("topK"));
+        assertEquals(1, events.get(0).getInt("results"));
+    }
+
+    private List<RecordedEvent> read(Recording recording) throws Exception {
+        Path file = tempDir.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+}
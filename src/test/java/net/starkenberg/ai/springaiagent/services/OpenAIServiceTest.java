@@ -2,9 +2,11 @@ package net.starkenberg.ai.springaiagent.services;
 
 import net.starkenberg.ai.springaiagent.chat.Answer;
 import net.starkenberg.ai.springaiagent.chat.Question;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.model.ChatModel;
@@ -14,6 +16,7 @@ import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 
@@ -27,6 +30,8 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class OpenAIServiceTest {
+    private static final SiteProperties.Site SITE =
+            new SiteProperties.Site("amplify", "Amplify Federal", "https://amplifyfederal.com", List.of(), null);
 
     @Mock
     private ChatModel chatModel;
@@ -71,7 +76,7 @@ class OpenAIServiceTest {
         when(chatModel.call(any(Prompt.class))).thenReturn(mockResponse);
 
         // Act
-        Answer answer = openAIService.answer(question);
+        Answer answer = openAIService.answer(SITE, question);
 
         // Assert
         assertNotNull(answer);
@@ -100,10 +105,13 @@ class OpenAIServiceTest {
         when(chatModel.call(any(Prompt.class))).thenReturn(mockResponse);
 
         // Act
-        openAIService.answer(question);
+        openAIService.answer(SITE, question);
 
         // Assert & Verify
-        verify(vectorStore).similaritySearch(any(SearchRequest.class));
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(vectorStore).similaritySearch(captor.capture());
+        assertEquals(questionText, captor.getValue().getQuery());
+        assertEquals(new FilterExpressionTextParser().parse("site == 'amplify'"), captor.getValue().getFilterExpression());
     }
 
     @Test
@@ -123,9 +131,39 @@ class OpenAIServiceTest {
         when(chatModel.call(any(Prompt.class))).thenReturn(mockResponse);
 
         // Act
-        openAIService.answer(question);
+        openAIService.answer(SITE, question);
 
         // Verify
         verify(chatModel).call(any(Prompt.class));
     }
+
+    @Test
+    void testGenerateFallsBackToDocumentsWhenModelUnavailable() {
+        // Arrange
+        Document document = Document.builder()
+                .text("Our company values are integrity, innovation, and teamwork.")
+                .metadata(java.util.Map.of("url", "https://amplifyfederal.com/about"))
+                .build();
+        when(chatModel.call(any(Prompt.class))).thenThrow(new ChatModelUnavailableException("Chat model circuit breaker is open"));
+
+        // Act
+        String answer = openAIService.generate(SITE, "What are the company values?", List.of(document));
+
+        // Assert
+        assertTrue(answer.startsWith(DegradedAnswer.PREFIX.formatted("Amplify Federal")));
+        assertTrue(answer.contains("integrity, innovation, and teamwork"));
+        assertTrue(answer.contains("https://amplifyfederal.com/about"));
+    }
+
+    @Test
+    void testGenerateWithoutDocumentsFallsBackToNotFound() {
+        // Arrange
+        when(chatModel.call(any(Prompt.class))).thenThrow(new ChatModelUnavailableException("Chat model missed its deadline"));
+
+        // Act
+        String answer = openAIService.generate(SITE, "What are the company values?", List.of());
+
+        // Assert
+        assertEquals(DegradedAnswer.NOT_FOUND, answer);
+    }
 }
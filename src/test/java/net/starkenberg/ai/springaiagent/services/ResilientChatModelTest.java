@@ -0,0 +1,203 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.starkenberg.ai.springaiagent.config.LlmProperties;
+import net.starkenberg.ai.springaiagent.jfr.PipelineContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientChatModelTest {
+
+    private final StubChatModel stub = new StubChatModel();
+    private ResilientChatModel chatModel;
+
+    @AfterEach
+    void tearDown() {
+        if (chatModel != null) chatModel.shutdown();
+    }
+
+    @Test
+    void testCallReturnsDelegateResponse() {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofSeconds(1), false, 3, Duration.ofSeconds(30)));
+        stub.then(Duration.ZERO, "hello");
+
+        // Act
+        ChatResponse response = chatModel.call(new Prompt("hi"));
+
+        // Assert
+        assertEquals("hello", response.getResult().getOutput().getText());
+        assertEquals(1, stub.calls.get());
+    }
+
+    @Test
+    void testSlowCallIsCutOffAtDeadline() {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofMillis(100), false, 3, Duration.ofSeconds(30)));
+        stub.then(Duration.ofSeconds(2), "too late");
+
+        // Act
+        long start = System.nanoTime();
+        assertThrows(ChatModelUnavailableException.class, () -> chatModel.call(new Prompt("hi")));
+
+        // Assert
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+    }
+
+    @Test
+    void testHedgedRequestWinsWhenFirstIsSlow() {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofSeconds(5), true, 3, Duration.ofSeconds(30)));
+        stub.then(Duration.ofSeconds(2), "slow");
+        stub.then(Duration.ZERO, "fast");
+
+        // Act
+        long start = System.nanoTime();
+        ChatResponse response = chatModel.call(new Prompt("hi"));
+
+        // Assert
+        assertEquals("fast", response.getResult().getOutput().getText());
+        assertEquals(2, stub.calls.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+    }
+
+    @Test
+    void testFastCallIsNotHedged() {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofSeconds(5), true, 3, Duration.ofSeconds(30)));
+        stub.then(Duration.ZERO, "fast");
+
+        // Act
+        chatModel.call(new Prompt("hi"));
+
+        // Assert
+        assertEquals(1, stub.calls.get());
+    }
+
+    @Test
+    void testCircuitOpensAfterFailuresAndRecovers() throws Exception {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofSeconds(1), false, 2, Duration.ofMillis(200)));
+        stub.failWith(new IllegalStateException("503 Service Unavailable"));
+        stub.failWith(new IllegalStateException("503 Service Unavailable"));
+
+        // Act & Assert
+        assertThrows(ChatModelUnavailableException.class, () -> chatModel.call(new Prompt("hi")));
+        assertThrows(ChatModelUnavailableException.class, () -> chatModel.call(new Prompt("hi")));
+        assertEquals(CircuitBreaker.State.OPEN, chatModel.getCircuitState());
+
+        // open circuit rejects without calling the model
+        assertThrows(ChatModelUnavailableException.class, () -> chatModel.call(new Prompt("hi")));
+        assertEquals(2, stub.calls.get());
+
+        // after the open duration a trial call closes the circuit
+        Thread.sleep(250);
+        stub.then(Duration.ZERO, "recovered");
+        assertEquals("recovered", chatModel.call(new Prompt("hi")).getResult().getOutput().getText());
+        assertEquals(CircuitBreaker.State.CLOSED, chatModel.getCircuitState());
+    }
+
+    @Test
+    void testLatencyPercentile() {
+        // Arrange
+        ResilientChatModel.LatencyWindow window = new ResilientChatModel.LatencyWindow(4);
+
+        // Act
+        for (long latency : new long[]{500, 100, 400, 200, 300}) {
+            window.record(latency);
+        }
+
+        // Assert - oldest sample (500) was overwritten
+        assertEquals(400, window.percentile(100, 1));
+        assertEquals(300, window.percentile(75, 1));
+        assertEquals(0, window.percentile(50, 5));
+    }
+
+    @Test
+    void testCallsAreRecordedAsLlmCallEvents(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        chatModel = new ResilientChatModel(stub, properties(Duration.ofMillis(100), false, 3, Duration.ofSeconds(30)));
+        stub.then(Duration.ZERO, "hello");
+        stub.then(Duration.ofSeconds(2), "too late");
+
+        // Act
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("net.starkenberg.ai.LlmCall").withThreshold(Duration.ZERO);
+            recording.start();
+            try (PipelineContext.Scope scope = PipelineContext.open("chat-1")) {
+                chatModel.call(new Prompt("hi"));
+                assertThrows(ChatModelUnavailableException.class, () -> chatModel.call(new Prompt("hi")));
+            }
+            recording.stop();
+            Path file = tempDir.resolve("recording.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        // Assert
+        assertEquals(2, events.size());
+        RecordedEvent success = events.stream().filter(e -> e.getString("outcome").equals("success")).findFirst().orElseThrow();
+        assertEquals("chat-1", success.getString("key"));
+        assertEquals(2, success.getLong("promptCharacters"));
+        assertEquals(5, success.getLong("responseCharacters"));
+        assertEquals(1, success.getInt("attempts"));
+        assertTrue(events.stream().anyMatch(e -> e.getString("outcome").equals("deadline")));
+    }
+
+    private static LlmProperties properties(Duration deadline, boolean hedge, int failureThreshold, Duration openDuration) {
+        return new LlmProperties(deadline,
+                new LlmProperties.Hedge(hedge, 95, Duration.ofMillis(50), 1000),
+                new LlmProperties.CircuitBreaker(failureThreshold, openDuration));
+    }
+
+    /**
+     * Local chat model that replays queued latencies, answers and failures
+     */
+    static class StubChatModel implements ChatModel {
+        private record Behavior(Duration latency, String text, RuntimeException failure) {
+        }
+
+        private final Queue<Behavior> behaviors = new ConcurrentLinkedQueue<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        void then(Duration latency, String text) {
+            behaviors.add(new Behavior(latency, text, null));
+        }
+
+        void failWith(RuntimeException failure) {
+            behaviors.add(new Behavior(Duration.ZERO, null, failure));
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            Behavior behavior = behaviors.remove();
+            try {
+                Thread.sleep(behavior.latency());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("cancelled", e);
+            }
+            if (behavior.failure() != null) throw behavior.failure();
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(behavior.text()))));
+        }
+    }
+}
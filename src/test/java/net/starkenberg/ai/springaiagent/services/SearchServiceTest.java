@@ -0,0 +1,93 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.chat.SearchResult;
+import net.starkenberg.ai.springaiagent.config.SiteProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchServiceTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new SearchService(vectorStore, new SiteProperties(List.of(
+                new SiteProperties.Site("amplify", "Amplify Federal", "https://amplifyfederal.com", List.of(), null),
+                new SiteProperties.Site("docs", "Docs", "https://docs.example.com", List.of(), null))));
+    }
+
+    @Test
+    void testSearchReturnsRankedChunksWithUrlAndScore() {
+        // Arrange
+        Document first = Document.builder().text("Our core values").metadata(Map.of("url", "https://example.com/about")).score(0.92).build();
+        Document second = Document.builder().text("Careers").metadata(Map.of("source", "careers")).score(0.81).build();
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(first, second));
+
+        // Act
+        List<SearchResult> results = searchService.search("core values", 2, null);
+
+        // Assert
+        assertEquals(List.of(
+                new SearchResult("Our core values", "https://example.com/about", 0.92),
+                new SearchResult("Careers", "careers", 0.81)), results);
+    }
+
+    @Test
+    void testSearchDefaultsAndClampsTopK() {
+        // Arrange
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        when(vectorStore.similaritySearch(captor.capture())).thenReturn(List.of());
+
+        // Act
+        searchService.search("values", null, null);
+        searchService.search("values", 500, null);
+        searchService.search("values", 0, null);
+
+        // Assert
+        assertEquals(SearchRequest.DEFAULT_TOP_K, captor.getAllValues().get(0).getTopK());
+        assertEquals(SearchService.MAX_TOP_K, captor.getAllValues().get(1).getTopK());
+        assertEquals(1, captor.getAllValues().get(2).getTopK());
+        assertEquals("values", captor.getAllValues().get(0).getQuery());
+    }
+
+    @Test
+    void testSearchIsLimitedToRequestedSite() {
+        // Arrange
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        when(vectorStore.similaritySearch(captor.capture())).thenReturn(List.of());
+
+        // Act
+        searchService.search("values", null, null);
+        searchService.search("values", null, "docs");
+
+        // Assert
+        assertEquals(new FilterExpressionTextParser().parse("site == 'amplify'"), captor.getAllValues().get(0).getFilterExpression());
+        assertEquals(new FilterExpressionTextParser().parse("site == 'docs'"), captor.getAllValues().get(1).getFilterExpression());
+    }
+
+    @Test
+    void testSearchRejectsUnknownSite() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> searchService.search("values", null, "missing"));
+        verifyNoInteractions(vectorStore);
+    }
+}
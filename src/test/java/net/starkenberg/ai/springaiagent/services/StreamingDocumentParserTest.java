@@ -0,0 +1,245 @@
+package net.starkenberg.ai.springaiagent.services;
+
+import net.starkenberg.ai.springaiagent.config.IngestProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.util.unit.DataSize;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingDocumentParserTest {
+
+    private static final int PAGES = 400;
+    private static final int LINES_PER_PAGE = 50;
+    private static final String URL = "https://example.com/large.pdf";
+    private static final int SAMPLE_EVERY_PAGES = 50;
+
+    @TempDir
+    static Path tempDir;
+
+    private static Path largePdf;
+    private static Path smallPdf;
+
+    @BeforeAll
+    static void generatePdfs() throws IOException {
+        largePdf = generatePdf("large.pdf", PAGES);
+        smallPdf = generatePdf("small.pdf", 10);
+    }
+
+    private static Path generatePdf(String name, int pages) throws IOException {
+        Path path = tempDir.resolve(name);
+        try (PDDocument pdf = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                pdf.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.newLineAtOffset(40, 760);
+                    for (int line = 1; line <= LINES_PER_PAGE; line++) {
+                        content.showText("Page " + p + " line " + line + " Amplify Federal delivers modern digital services to government agencies.");
+                        content.newLineAtOffset(0, -14);
+                    }
+                    content.endText();
+                }
+            }
+            pdf.save(path.toFile());
+        }
+        return path;
+    }
+
+    @Test
+    void testLargePdfIsEmittedPageByPage() throws Exception {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofMinutes(2), 20_000));
+        List<Integer> pages = new ArrayList<>();
+        AtomicLong largestSegment = new AtomicLong();
+        AtomicLong totalChars = new AtomicLong();
+
+        // Act - the sink keeps nothing but counters, as the loader hands each page straight to the splitter
+        parser.parse(new FileSystemResource(largePdf), URL, segment -> {
+            pages.add((Integer) segment.getMetadata().get("page"));
+            largestSegment.accumulateAndGet(segment.getText().length(), Math::max);
+            totalChars.addAndGet(segment.getText().length());
+        });
+
+        // Assert
+        assertEquals(PAGES, pages.size());
+        assertEquals(1, pages.get(0));
+        assertEquals(PAGES, pages.get(PAGES - 1));
+        assertTrue(largestSegment.get() * 100 < totalChars.get(), "each segment holds a single page of text");
+    }
+
+    @Test
+    void testPeakHeapStaysBelowReadingTheWholeDocument() throws Exception {
+        // Arrange - the buffered path collects the text the way TikaDocumentReader does, both are sampled
+        // after a full collection every few pages, so only what each path still holds is counted
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofMinutes(2), 20_000));
+        AtomicLong streamingPeak = new AtomicLong();
+        AtomicLong bufferedPeak = new AtomicLong();
+        AtomicLong totalChars = new AtomicLong();
+        AtomicInteger streamedPages = new AtomicInteger();
+
+        // Act
+        long streamingBaseline = liveHeap();
+        parser.parse(new FileSystemResource(largePdf), URL, segment -> {
+            totalChars.addAndGet(segment.getText().length());
+            if (streamedPages.incrementAndGet() % SAMPLE_EVERY_PAGES == 0) {
+                streamingPeak.accumulateAndGet(liveHeap() - streamingBaseline, Math::max);
+            }
+        });
+        long bufferedBaseline = liveHeap();
+        BodyContentHandler text = new BodyContentHandler(-1);
+        ContentHandlerDecorator sampling = new ContentHandlerDecorator(text) {
+            private int pages;
+
+            @Override
+            public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+                super.startElement(uri, localName, name, atts);
+                if ("div".equals(localName) && "page".equals(atts.getValue("class")) && ++pages % SAMPLE_EVERY_PAGES == 0) {
+                    bufferedPeak.accumulateAndGet(liveHeap() - bufferedBaseline, Math::max);
+                }
+            }
+        };
+        try (InputStream in = Files.newInputStream(largePdf)) {
+            new AutoDetectParser().parse(in, sampling, new Metadata(), new ParseContext());
+        }
+        bufferedPeak.accumulateAndGet(liveHeap() - bufferedBaseline, Math::max);
+        Reference.reachabilityFence(text);
+
+        // Assert - streaming holds one page where the buffered path holds the text of every page read so far
+        System.out.printf("Peak heap growth over %d pages (%d KB text): streaming %d KB, buffered %d KB%n",
+                PAGES, totalChars.get() / 1024, streamingPeak.get() / 1024, bufferedPeak.get() / 1024);
+        assertTrue(streamingPeak.get() + totalChars.get() / 2 < bufferedPeak.get(),
+                "streaming peak " + streamingPeak.get() + " should be at least half the text below buffered peak " + bufferedPeak.get());
+    }
+
+    @Test
+    void testSlowSinkDoesNotCountAgainstParseTimeout() throws Exception {
+        // Arrange - storing the pages takes twice the timeout, parsing them takes a fraction of it
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofSeconds(3), 20_000));
+        List<Integer> pages = new ArrayList<>();
+
+        // Act
+        parser.parse(new FileSystemResource(smallPdf), URL, segment -> {
+            try {
+                Thread.sleep(600);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            pages.add((Integer) segment.getMetadata().get("page"));
+        });
+
+        // Assert
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), pages);
+    }
+
+    @Test
+    void testSegmentsAreCappedWithinAPage() throws Exception {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofMinutes(2), 1_000));
+        List<Document> segments = new ArrayList<>();
+
+        // Act
+        parser.parse(new FileSystemResource(largePdf), URL, segments::add);
+
+        // Assert
+        assertTrue(segments.size() > PAGES);
+        segments.forEach(segment -> assertTrue(segment.getText().length() <= 1_000));
+        assertEquals(URL, segments.get(0).getMetadata().get("url"));
+    }
+
+    @Test
+    void testDocumentOverMaxSizeIsRejected() {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofKilobytes(16), Duration.ofMinutes(2), 20_000));
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> parser.parse(new FileSystemResource(largePdf), URL, segment -> {
+        }));
+    }
+
+    @Test
+    void testParseTimeoutStopsParsing() {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ZERO, 20_000));
+        List<Document> segments = new ArrayList<>();
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> parser.parse(new FileSystemResource(largePdf), URL, segments::add));
+        assertTrue(segments.size() < PAGES);
+    }
+
+    @Test
+    void testParseTimeoutCoversStalledDownload() {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofMillis(200), 20_000));
+        InputStream stalled = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+
+        // Act & Assert - no SAX event is ever raised, the timeout still fires
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                assertThrows(TimeoutException.class, () -> parser.parse(new InputStreamResource(stalled), URL, segment -> {
+                })));
+    }
+
+    @Test
+    void testSupportsOnlyLargeDocumentTypes() {
+        // Arrange
+        StreamingDocumentParser parser = new StreamingDocumentParser(properties(DataSize.ofMegabytes(50), Duration.ofMinutes(2), 20_000));
+
+        // Act & Assert
+        assertTrue(parser.supports("https://example.com/report.pdf"));
+        assertTrue(parser.supports("https://example.com/policy.docx"));
+        assertFalse(parser.supports("https://example.com/about"));
+    }
+
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static IngestProperties properties(DataSize maxDocumentSize, Duration parseTimeout, int maxSegmentChars) {
+        return new IngestProperties(true, maxDocumentSize, parseTimeout, maxSegmentChars, true);
+    }
+}
@@ -23,15 +23,13 @@ class WebScraperServiceTest {
 
     @BeforeEach
     void setUp() {
-        webScraperService = new WebScraperService(BASE_URL);
+        webScraperService = new WebScraperService();
     }
 
     @Test
-    void testConstructor() {
-        // Verify that the constructor sets the baseUrl correctly
-        WebScraperService service = new WebScraperService("https://test.com");
-        // We can't directly access the private field, but we can test the behavior
-        // by calling crawlSite with a mocked Jsoup
+    void testCrawlSiteStartsFromGivenBaseUrl() {
+        // Verify that the crawl starts from the base URL it is given
+        WebScraperService service = new WebScraperService();
         try (MockedStatic<Jsoup> jsoupMock = mockStatic(Jsoup.class)) {
             // Setup mock
             Connection connectionMock = mock(Connection.class);
@@ -44,7 +42,7 @@ class WebScraperServiceTest {
             when(elementsMock.iterator()).thenReturn(java.util.Collections.emptyIterator());
             
             // Call the method
-            Set<String> result = service.crawlSite();
+            Set<String> result = service.crawlSite("https://test.com");
             
             // Verify that Jsoup.connect was called with the correct URL
             jsoupMock.verify(() -> Jsoup.connect("https://test.com"));
@@ -71,7 +69,7 @@ class WebScraperServiceTest {
             when(elementsMock.iterator()).thenReturn(java.util.Collections.emptyIterator());
             
             // Call the method
-            Set<String> result = webScraperService.crawlSite();
+            Set<String> result = webScraperService.crawlSite(BASE_URL);
             
             // Verify that Jsoup.connect was called with the correct URL
             jsoupMock.verify(() -> Jsoup.connect(BASE_URL));
@@ -115,7 +113,7 @@ class WebScraperServiceTest {
             when(link1ElementsMock.iterator()).thenReturn(java.util.Collections.emptyIterator());
             
             // Call the method
-            Set<String> result = webScraperService.crawlSite();
+            Set<String> result = webScraperService.crawlSite(BASE_URL);
             
             // Verify that Jsoup.connect was called with the correct URLs
             jsoupMock.verify(() -> Jsoup.connect(BASE_URL));
@@ -149,7 +147,7 @@ class WebScraperServiceTest {
             when(elementsMock.iterator()).thenReturn(java.util.List.of(linkElement).iterator());
             
             // Call the method
-            Set<String> result = webScraperService.crawlSite();
+            Set<String> result = webScraperService.crawlSite(BASE_URL);
             
             // Verify that Jsoup.connect was called only with the base URL
             jsoupMock.verify(() -> Jsoup.connect(BASE_URL));
@@ -182,7 +180,7 @@ class WebScraperServiceTest {
             when(elementsMock.iterator()).thenReturn(java.util.List.of(linkElement).iterator());
             
             // Call the method
-            Set<String> result = webScraperService.crawlSite();
+            Set<String> result = webScraperService.crawlSite(BASE_URL);
             
             // Verify that Jsoup.connect was called only with the base URL
             jsoupMock.verify(() -> Jsoup.connect(BASE_URL));
@@ -206,7 +204,7 @@ class WebScraperServiceTest {
             when(connectionMock.get()).thenThrow(new IOException("Connection error"));
             
             // Call the method
-            Set<String> result = webScraperService.crawlSite();
+            Set<String> result = webScraperService.crawlSite(BASE_URL);
             
             // Verify that Jsoup.connect was called with the correct URL
             jsoupMock.verify(() -> Jsoup.connect(BASE_URL));
@@ -239,4 +237,53 @@ class WebScraperServiceTest {
         String result4 = (String) stripFragmentMethod.invoke(webScraperService, "https://example.com/page/");
         assertEquals("https://example.com/page", result4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCrawlSiteHandsParsedPagesToVisitor() throws IOException {
+        // Test that each fetched page is passed to the visitor so it does not need to be fetched again
+        try (MockedStatic<Jsoup> jsoupMock = mockStatic(Jsoup.class)) {
+            // Setup mocks
+            Connection connectionMock = mock(Connection.class);
+            Document documentMock = mock(Document.class);
+            Elements elementsMock = mock(Elements.class);
+
+            jsoupMock.when(() -> Jsoup.connect(BASE_URL)).thenReturn(connectionMock);
+            when(connectionMock.get()).thenReturn(documentMock);
+            when(documentMock.select("a[href]")).thenReturn(elementsMock);
+            when(elementsMock.iterator()).thenReturn(java.util.Collections.emptyIterator());
+
+            // Call the method with a visitor that records what it is given
+            java.util.Map<String, Document> visited = new java.util.HashMap<>();
+            webScraperService.crawlSite(BASE_URL, visited::put);
+
+            // Verify the visitor received the parsed page
+            assertEquals(1, visited.size());
+            assertSame(documentMock, visited.get(BASE_URL));
+        }
+    }
+
+    @Test
+    void testVisitorFailureIsNotReportedAsFetchFailure() throws IOException {
+        // Test that an exception from the visitor reaches the caller instead of being logged as a failed fetch
+        try (MockedStatic<Jsoup> jsoupMock = mockStatic(Jsoup.class)) {
+            // Setup mocks
+            Connection connectionMock = mock(Connection.class);
+            Document documentMock = mock(Document.class);
+            Elements elementsMock = mock(Elements.class);
+
+            jsoupMock.when(() -> Jsoup.connect(BASE_URL)).thenReturn(connectionMock);
+            when(connectionMock.get()).thenReturn(documentMock);
+            when(documentMock.select("a[href]")).thenReturn(elementsMock);
+            when(elementsMock.iterator()).thenReturn(java.util.Collections.emptyIterator());
+
+            // Call the method with a visitor that fails to index the page
+            IllegalStateException failure = assertThrows(IllegalStateException.class,
+                    () -> webScraperService.crawlSite(BASE_URL, (url, page) -> {
+                        throw new IllegalStateException("vector store unavailable");
+                    }));
+
+            // Verify the visitor's own exception is surfaced
+            assertEquals("vector store unavailable", failure.getMessage());
+        }
+    }
+}